@@ -1,5 +1,7 @@
 package com.grishin.apartment.checker;
 
+import com.grishin.apartment.checker.config.HttpClientConfig;
+import com.grishin.apartment.checker.service.HttpTransport;
 import jakarta.persistence.EntityManagerFactory;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
@@ -8,6 +10,9 @@ import org.springframework.orm.jpa.JpaTransactionManager;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.web.client.RestTemplate;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 @SpringBootApplication
 @EnableScheduling
 public class Application {
@@ -17,9 +22,14 @@ public class Application {
 	}
 
 
+	@Bean(destroyMethod = "close")
+	public ExecutorService httpClientExecutor() {
+		return Executors.newVirtualThreadPerTaskExecutor();
+	}
+
 	@Bean
-	public RestTemplate restTemplate() {
-		return new RestTemplate();
+	public RestTemplate restTemplate(HttpClientConfig httpClientConfig, ExecutorService httpClientExecutor) {
+		return HttpTransport.restTemplate(httpClientConfig, httpClientExecutor);
 	}
 
 	@Bean
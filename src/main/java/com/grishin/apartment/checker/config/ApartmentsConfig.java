@@ -16,5 +16,4 @@ import java.util.List;
 public class ApartmentsConfig {
     private List<CommunityConfig> communities;
     private String url;
-    private Integer checkIntervalMinutes;
 }
\ No newline at end of file
@@ -0,0 +1,32 @@
+package com.grishin.apartment.checker.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Configuration
+@ConfigurationProperties(prefix = "apartments.fetch")
+public class FetchConfig {
+    private int parallelism = 4;
+    /**
+     * Bounds a buffered fetch of one community, retries included.
+     */
+    private Duration timeout = Duration.ofSeconds(60);
+    /**
+     * Bounds a streamed fetch of one community, retries and the syncing of its chunks included.
+     */
+    private Duration streamTimeout = Duration.ofMinutes(10);
+    private int unitsPerFloor = 10;
+    /**
+     * Sync units while the response is read instead of buffering it. Streaming cycles can't be skipped by
+     * the response fingerprint, only unit by unit by their content hash.
+     */
+    private boolean streaming = false;
+}
@@ -0,0 +1,22 @@
+package com.grishin.apartment.checker.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Configuration
+@ConfigurationProperties(prefix = "apartments.listing")
+public class ListingConfig {
+    /**
+     * How long a chat's listing is paged from its cached result.
+     */
+    private Duration cacheTtl = Duration.ofMinutes(10);
+    private int cacheMaxEntries = 1000;
+}
@@ -0,0 +1,25 @@
+package com.grishin.apartment.checker.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Configuration
+@ConfigurationProperties(prefix = "apartments.resilience")
+public class ResilienceConfig {
+    private int maxAttempts = 3;
+    private Duration initialBackoff = Duration.ofSeconds(1);
+    private Duration maxBackoff = Duration.ofSeconds(15);
+    private int failureThreshold = 3;
+    private Duration openDuration = Duration.ofHours(1);
+    private boolean hedging = false;
+    private int hedgingMinSamples = 20;
+    private int latencyWindow = 100;
+}
@@ -0,0 +1,30 @@
+package com.grishin.apartment.checker.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Configuration
+@ConfigurationProperties(prefix = "apartments.schedule")
+public class ScheduleConfig {
+    /**
+     * How often due communities are looked for. Read by {@link com.grishin.apartment.checker.service.AdaptivePollingScheduler}'s
+     * {@code @Scheduled} through SpEL, so this is its only default.
+     */
+    private int tickMinutes = 1;
+    /**
+     * First poll of each community after startup.
+     */
+    private Duration initialInterval = Duration.ofHours(2);
+    private Duration minInterval = Duration.ofMinutes(15);
+    private Duration maxInterval = Duration.ofHours(6);
+    private double jitter = 0.1;
+    private double churnSmoothing = 0.3;
+}
@@ -0,0 +1,23 @@
+package com.grishin.apartment.checker.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Configuration
+@ConfigurationProperties(prefix = "apartments.sync")
+public class SyncConfig {
+    /**
+     * Units written per transaction. Zero or less writes a whole community in one transaction.
+     */
+    private int chunkSize = 1000;
+    /**
+     * Keys cached per kind of reference data: communities, floor plans and floor plan groups.
+     */
+    private int referenceCacheSize = 10_000;
+}
@@ -0,0 +1,40 @@
+package com.grishin.apartment.checker.dto;
+
+import com.grishin.apartment.checker.storage.entity.UnitAmenity;
+
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * A set of amenities as the bits of a {@code long}, each amenity at its {@link UnitAmenity#getMaskBit() mask bit},
+ * so "has all of them" is a single bitwise AND. Amenities without a bit that fits, or not stored at all, are kept
+ * by name.
+ */
+public record AmenityMask(long bits, Set<String> unencoded) {
+    public static final int CAPACITY = Long.SIZE;
+    public static final AmenityMask NONE = new AmenityMask(0, Set.of());
+
+    public static boolean fits(Integer maskBit) {
+        return maskBit != null && maskBit >= 0 && maskBit < CAPACITY;
+    }
+
+    /**
+     * Mask stored with a unit for its amenities.
+     */
+    public static long bitsOf(Collection<UnitAmenity> amenities) {
+        long bits = 0;
+        for (UnitAmenity amenity : amenities) {
+            if (fits(amenity.getMaskBit()))
+                bits |= 1L << amenity.getMaskBit();
+        }
+        return bits;
+    }
+
+    public boolean isEmpty() {
+        return bits == 0 && unencoded.isEmpty();
+    }
+
+    public boolean isContainedIn(long unitBits, Set<String> unitAmenityNames) {
+        return (unitBits & bits) == bits && unitAmenityNames.containsAll(unencoded);
+    }
+}
@@ -0,0 +1,19 @@
+package com.grishin.apartment.checker.dto;
+
+import java.util.List;
+
+/**
+ * @param number zero-based page number, clamped to the last page
+ * @param total  every matching unit, not just the ones on this page
+ */
+public record ApartmentPage(List<UnitMessage> units, int number, int total) {
+    public static final ApartmentPage EMPTY = new ApartmentPage(List.of(), 0, 0);
+
+    public int totalPages(int pageSize) {
+        return (total + pageSize - 1) / pageSize;
+    }
+
+    public boolean hasNext(int pageSize) {
+        return number < totalPages(pageSize) - 1;
+    }
+}
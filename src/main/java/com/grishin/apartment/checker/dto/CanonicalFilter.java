@@ -0,0 +1,63 @@
+package com.grishin.apartment.checker.dto;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Normalized form of an {@link ApartmentFilter}: dates as calendar days, the floor plan fragment lower-cased and
+ * amenities distinct and sorted. Two filters that accept the same units are equal and hash alike, so subscriptions
+ * sharing one can be evaluated once.
+ */
+public record CanonicalFilter(String communityId,
+                              Boolean studio,
+                              Integer minBedrooms,
+                              Integer maxBedrooms,
+                              Integer minBathrooms,
+                              Integer maxBathrooms,
+                              Integer minPrice,
+                              Integer maxPrice,
+                              Integer minFloor,
+                              Integer maxFloor,
+                              LocalDate minDate,
+                              LocalDate maxDate,
+                              String floorPlanNameContains,
+                              List<String> amenities) {
+
+    public static CanonicalFilter of(ApartmentFilter filter) {
+        List<String> amenities = filter.getAmenities() != null ? filter.getAmenities().stream().distinct().sorted().toList() : List.of();
+        return new CanonicalFilter(
+                filter.getCommunityId(),
+                filter.getIsStudio(),
+                filter.getMinBedrooms(),
+                filter.getMaxBedrooms(),
+                filter.getMinBathrooms(),
+                filter.getMaxBathrooms(),
+                filter.getMinPrice(),
+                filter.getMaxPrice(),
+                filter.getMinFloor(),
+                filter.getMaxFloor(),
+                MatchableUnit.toLocalDate(filter.getMinDate()),
+                MatchableUnit.toLocalDate(filter.getMaxDate()),
+                filter.getFloorPlanNameContains() != null ? filter.getFloorPlanNameContains().toLowerCase() : null,
+                amenities);
+    }
+
+    public ApartmentFilter toFilter() {
+        ApartmentFilter filter = new ApartmentFilter();
+        filter.setCommunityId(communityId);
+        filter.setIsStudio(studio);
+        filter.setMinBedrooms(minBedrooms);
+        filter.setMaxBedrooms(maxBedrooms);
+        filter.setMinBathrooms(minBathrooms);
+        filter.setMaxBathrooms(maxBathrooms);
+        filter.setMinPrice(minPrice);
+        filter.setMaxPrice(maxPrice);
+        filter.setMinFloor(minFloor);
+        filter.setMaxFloor(maxFloor);
+        filter.setMinDate(minDate != null ? java.sql.Date.valueOf(minDate) : null);
+        filter.setMaxDate(maxDate != null ? java.sql.Date.valueOf(maxDate) : null);
+        filter.setFloorPlanNameContains(floorPlanNameContains);
+        filter.setAmenities(amenities.isEmpty() ? null : amenities);
+        return filter;
+    }
+}
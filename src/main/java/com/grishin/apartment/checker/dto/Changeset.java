@@ -0,0 +1,39 @@
+package com.grishin.apartment.checker.dto;
+
+import java.util.List;
+
+/**
+ * Typed changes produced by one community sync, in the order they were detected.
+ */
+public record Changeset(List<InventoryChange> changes) {
+
+    public static final Changeset EMPTY = new Changeset(List.of());
+
+    public Changeset {
+        changes = List.copyOf(changes);
+    }
+
+    public boolean isEmpty() {
+        return changes.isEmpty();
+    }
+
+    public <T extends InventoryChange> List<T> ofType(Class<T> type) {
+        return changes.stream().filter(type::isInstance).map(type::cast).toList();
+    }
+
+    public List<String> addedUnitIds() {
+        return ofType(InventoryChange.UnitAdded.class).stream().map(InventoryChange::objectId).toList();
+    }
+
+    public List<String> removedUnitIds() {
+        return ofType(InventoryChange.UnitRemoved.class).stream().map(InventoryChange::objectId).toList();
+    }
+
+    public SyncStats stats() {
+        SyncStats stats = new SyncStats();
+        stats.setAdded(ofType(InventoryChange.UnitAdded.class).size());
+        stats.setRemoved(ofType(InventoryChange.UnitRemoved.class).size());
+        stats.setRepriced(ofType(InventoryChange.PriceChanged.class).size());
+        return stats;
+    }
+}
@@ -0,0 +1,28 @@
+package com.grishin.apartment.checker.dto;
+
+import java.util.Set;
+
+/**
+ * A single difference between a fetched community snapshot and the stored inventory.
+ */
+public sealed interface InventoryChange {
+    String objectId();
+
+    record UnitAdded(String objectId) implements InventoryChange {
+    }
+
+    record UnitRemoved(String objectId) implements InventoryChange {
+    }
+
+    record PriceChanged(String objectId, Integer previousPrice, Integer price) implements InventoryChange {
+    }
+
+    record AvailabilityDateChanged(String objectId, Long previousTimestamp, Long timestamp) implements InventoryChange {
+    }
+
+    /**
+     * @param attributes names of the unit properties that differ, e.g. {@code unitSqft} or {@code amenities}
+     */
+    record AttributesChanged(String objectId, Set<String> attributes) implements InventoryChange {
+    }
+}
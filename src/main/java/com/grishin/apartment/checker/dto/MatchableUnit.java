@@ -0,0 +1,82 @@
+package com.grishin.apartment.checker.dto;
+
+import com.grishin.apartment.checker.storage.UnitRepository;
+import com.grishin.apartment.checker.storage.entity.Unit;
+import com.grishin.apartment.checker.storage.entity.UnitAmenity;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Detached, flat view of a unit with the fields subscription filters look at, plus the message sent when one matches.
+ */
+public record MatchableUnit(String objectId,
+                            String communityId,
+                            Boolean studio,
+                            Integer bedrooms,
+                            Integer bathrooms,
+                            Integer price,
+                            Integer floor,
+                            String floorPlanName,
+                            Set<String> amenityNames,
+                            long amenityMask,
+                            LocalDate availableDate,
+                            UnitMessage message) {
+
+    public static MatchableUnit fromEntity(Unit unit) {
+        boolean hasFloorPlan = unit.getFloorPlan() != null;
+        boolean hasLeasePrice = unit.getUnitEarliestAvailable() != null;
+        return new MatchableUnit(
+                unit.getObjectId(),
+                unit.getCommunity() != null ? unit.getCommunity().getId() : null,
+                unit.getUnitIsStudio(),
+                hasFloorPlan ? unit.getFloorPlan().getFloorPlanBed() : null,
+                hasFloorPlan ? unit.getFloorPlan().getFloorPlanBath() : null,
+                hasLeasePrice ? unit.getUnitEarliestAvailable().getPrice() : null,
+                unit.getUnitFloor(),
+                hasFloorPlan ? unit.getFloorPlan().getFloorPlanName() : null,
+                unit.getAmenities().stream().map(UnitAmenity::getAmenityName).collect(Collectors.toUnmodifiableSet()),
+                unit.getAmenityMask() != null ? unit.getAmenityMask() : 0,
+                hasLeasePrice ? toLocalDate(unit.getUnitEarliestAvailable().getAvailableDate()) : null,
+                UnitMessage.fromEntity(unit));
+    }
+
+    /**
+     * Joins the rows of {@link UnitRepository#findRowsByObjectIdIn} with the amenity names of
+     * {@link UnitRepository#findAmenityNamesByObjectIdIn} for the same units.
+     */
+    public static List<MatchableUnit> fromRows(List<UnitRepository.UnitRow> rows, List<UnitRepository.AmenityName> amenities) {
+        Map<String, List<String>> amenityNames = new HashMap<>();
+        for (UnitRepository.AmenityName amenity : amenities)
+            amenityNames.computeIfAbsent(amenity.getObjectId(), id -> new ArrayList<>()).add(amenity.getAmenityName());
+        List<MatchableUnit> units = new ArrayList<>(rows.size());
+        for (UnitRepository.UnitRow row : rows) {
+            List<String> names = amenityNames.getOrDefault(row.getObjectId(), List.of()).stream().sorted().toList();
+            units.add(new MatchableUnit(
+                    row.getObjectId(),
+                    row.getCommunityId(),
+                    row.getStudio(),
+                    row.getBedrooms(),
+                    row.getBathrooms(),
+                    row.getPrice(),
+                    row.getFloor(),
+                    row.getFloorPlanName(),
+                    Set.copyOf(names),
+                    row.getAmenityMask() != null ? row.getAmenityMask() : 0,
+                    toLocalDate(row.getAvailableDate()),
+                    UnitMessage.fromRow(row, names)));
+        }
+        return units;
+    }
+
+    /**
+     * Calendar day of a date in the JVM time zone, the way a {@code DATE} column binds it.
+     */
+    public static LocalDate toLocalDate(Date date) {
+        // java.sql.Date doesn't support toInstant()
+        return date != null ? Instant.ofEpochMilli(date.getTime()).atZone(ZoneId.systemDefault()).toLocalDate() : null;
+    }
+}
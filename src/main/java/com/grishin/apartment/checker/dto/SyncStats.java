@@ -0,0 +1,14 @@
+package com.grishin.apartment.checker.dto;
+
+import lombok.Data;
+
+@Data
+public class SyncStats {
+    private int added;
+    private int removed;
+    private int repriced;
+
+    public int churn() {
+        return added + removed + repriced;
+    }
+}
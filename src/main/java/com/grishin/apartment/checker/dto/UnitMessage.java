@@ -1,5 +1,6 @@
 package com.grishin.apartment.checker.dto;
 
+import com.grishin.apartment.checker.storage.UnitRepository;
 import com.grishin.apartment.checker.storage.entity.Unit;
 import com.grishin.apartment.checker.storage.entity.UnitAmenity;
 import lombok.Builder;
@@ -40,4 +41,21 @@ public class UnitMessage {
                 .availableFrom(unit.getUnitEarliestAvailable().getAvailableDate())
                 .build();
     }
+
+    public static UnitMessage fromRow(UnitRepository.UnitRow row, List<String> amenityNames) {
+        boolean studio = Boolean.TRUE.equals(row.getStudio());
+        return UnitMessage.builder()
+                .buildingNumber(row.getBuildingNumber())
+                .unitMarketingName(row.getUnitMarketingName())
+                .isStudio(studio)
+                .bedrooms(studio ? null : row.getBedrooms())
+                .bathrooms(studio ? null : row.getBathrooms())
+                .floor(row.getFloor())
+                .price(row.getPrice())
+                .floorPlanName(row.getFloorPlanName())
+                .squareFeet(row.getSquareFeet())
+                .amenityNames(amenityNames)
+                .availableFrom(row.getAvailableDate())
+                .build();
+    }
 }
@@ -0,0 +1,17 @@
+package com.grishin.apartment.checker.dto;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Orders offered for the available apartments listing, all ascending.
+ */
+@Getter
+@RequiredArgsConstructor
+public enum UnitSort {
+    PRICE("Price"),
+    AVAILABLE_DATE("Date"),
+    PRICE_PER_SQFT("$/sq. ft.");
+
+    private final String label;
+}
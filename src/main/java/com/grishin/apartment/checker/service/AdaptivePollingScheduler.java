@@ -0,0 +1,116 @@
+package com.grishin.apartment.checker.service;
+
+import com.grishin.apartment.checker.config.ApartmentsConfig;
+import com.grishin.apartment.checker.config.CommunityConfig;
+import com.grishin.apartment.checker.config.ScheduleConfig;
+import com.grishin.apartment.checker.dto.SyncStats;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Polls every community on its own interval. The interval shrinks with the churn seen in recent cycles and with
+ * the number of subscribers, stays within {@code apartments.schedule.minInterval..maxInterval} and is jittered.
+ * Communities nobody is subscribed to are not polled. A community that failed to sync waits twice its previous
+ * interval, up to {@code maxInterval}, so an unreachable community isn't hammered every {@code minInterval}.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AdaptivePollingScheduler {
+    private final ApartmentChecker apartmentChecker;
+    private final ApartmentsConfig apartmentsConfig;
+    private final ScheduleConfig scheduleConfig;
+    private final SubscriptionIndex subscriptionIndex;
+
+    private final Map<String, PollState> pollStates = new ConcurrentHashMap<>();
+
+    @Scheduled(fixedDelayString = "#{@scheduleConfig.tickMinutes}", initialDelayString = "#{@scheduleConfig.tickMinutes}", timeUnit = TimeUnit.MINUTES)
+    public void pollDueCommunities() {
+        Instant now = Instant.now();
+        List<CommunityConfig> dueCommunities = new ArrayList<>();
+        Map<String, Integer> subscribers = subscriptionIndex.subscriberCounts();
+
+        for (CommunityConfig community : apartmentsConfig.getCommunities()) {
+            if (!subscribers.containsKey(community.getCommunityId())) {
+                log.debug("Community {} has no subscribers, not polling it", community.getName());
+                continue;
+            }
+            PollState state = pollStates.computeIfAbsent(community.getCommunityId(),
+                    id -> new PollState(scheduleConfig.getInitialInterval(), now.plus(jittered(scheduleConfig.getInitialInterval()))));
+            if (!now.isBefore(state.nextPollAt))
+                dueCommunities.add(community);
+        }
+
+        if (dueCommunities.isEmpty())
+            return;
+
+        Map<CommunityConfig, SyncStats> results = apartmentChecker.checkForNewApartments(dueCommunities);
+        Instant finishedAt = Instant.now();
+
+        for (CommunityConfig community : dueCommunities) {
+            PollState state = pollStates.get(community.getCommunityId());
+            SyncStats stats = results.get(community);
+            if (stats == null) {
+                state.interval = backoff(state.interval);
+                log.warn("Community {} was not synchronized, retrying in {}", community.getName(), state.interval);
+            } else {
+                double smoothing = scheduleConfig.getChurnSmoothing();
+                state.churn = smoothing * stats.churn() + (1 - smoothing) * state.churn;
+                state.interval = intervalFor(state.churn, subscribers.get(community.getCommunityId()));
+                log.info("Next poll of community {} in about {} (churn {}, smoothed churn {}, subscribers {})",
+                        community.getName(), state.interval, stats.churn(), "%.2f".formatted(state.churn), subscribers.get(community.getCommunityId()));
+            }
+            state.nextPollAt = finishedAt.plus(jittered(state.interval));
+        }
+    }
+
+    Duration intervalFor(double churn, long subscriberCount) {
+        // Every doubling of subscribers and every unit of smoothed churn per cycle shortens the interval
+        double demand = 1 + Math.log1p(subscriberCount) / Math.log(2);
+        long seconds = (long) (scheduleConfig.getMaxInterval().toSeconds() / ((1 + churn) * demand));
+        long min = scheduleConfig.getMinInterval().toSeconds();
+        long max = scheduleConfig.getMaxInterval().toSeconds();
+        return Duration.ofSeconds(Math.max(min, Math.min(max, seconds)));
+    }
+
+    /**
+     * @return the previous interval doubled, within {@code minInterval..maxInterval}
+     */
+    Duration backoff(Duration previous) {
+        Duration doubled = previous.multipliedBy(2);
+        if (doubled.compareTo(scheduleConfig.getMinInterval()) < 0)
+            return scheduleConfig.getMinInterval();
+        return doubled.compareTo(scheduleConfig.getMaxInterval()) > 0 ? scheduleConfig.getMaxInterval() : doubled;
+    }
+
+    private Duration jittered(Duration interval) {
+        double jitter = scheduleConfig.getJitter();
+        if (jitter <= 0)
+            return interval;
+        double factor = 1 + ThreadLocalRandom.current().nextDouble(-jitter, jitter);
+        return Duration.ofMillis((long) (interval.toMillis() * factor));
+    }
+
+    private static class PollState {
+        /**
+         * Last interval before jitter.
+         */
+        private Duration interval;
+        private Instant nextPollAt;
+        private double churn;
+
+        PollState(Duration interval, Instant nextPollAt) {
+            this.interval = interval;
+            this.nextPollAt = nextPollAt;
+        }
+    }
+}
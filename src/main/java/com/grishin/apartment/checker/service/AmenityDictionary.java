@@ -0,0 +1,123 @@
+package com.grishin.apartment.checker.service;
+
+import com.grishin.apartment.checker.dto.AmenityMask;
+import com.grishin.apartment.checker.storage.UnitAmenityRepository;
+import com.grishin.apartment.checker.storage.entity.UnitAmenity;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+/**
+ * In-memory name &lt;-&gt; id map of every known amenity. Loaded once at startup and extended as sync
+ * stores new amenities. Readers always see an immutable snapshot, so lookups never touch the database.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AmenityDictionary {
+    private final UnitAmenityRepository unitAmenityRepository;
+
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+    @PostConstruct
+    public void load() {
+        List<UnitAmenity> amenities = new ArrayList<>(unitAmenityRepository.findAll());
+        amenities.sort(Comparator.comparing(UnitAmenity::getId));
+        synchronized (this) {
+            snapshot = Snapshot.EMPTY.with(amenities);
+        }
+        log.info("Loaded {} amenities", amenities.size());
+    }
+
+    public Optional<Long> idOf(String amenityName) {
+        return Optional.ofNullable(snapshot.idsByName().get(amenityName));
+    }
+
+    public Optional<String> nameOf(Long id) {
+        return Optional.ofNullable(snapshot.namesById().get(id));
+    }
+
+    /**
+     * Stored {@link UnitAmenity#getMaskBit() mask bit} of a known amenity.
+     */
+    public OptionalInt maskBitOf(String amenityName) {
+        Integer maskBit = snapshot.maskBitsByName().get(amenityName);
+        return maskBit != null ? OptionalInt.of(maskBit) : OptionalInt.empty();
+    }
+
+    /**
+     * Encodes amenity names the way {@link AmenityMask#bitsOf} encodes a unit's amenities.
+     */
+    public AmenityMask encode(Collection<String> amenityNames) {
+        if (amenityNames == null || amenityNames.isEmpty())
+            return AmenityMask.NONE;
+        Snapshot current = snapshot;
+        long bits = 0;
+        Set<String> unencoded = new HashSet<>();
+        for (String name : amenityNames) {
+            Integer maskBit = current.maskBitsByName().get(name);
+            if (AmenityMask.fits(maskBit))
+                bits |= 1L << maskBit;
+            else
+                unencoded.add(name);
+        }
+        return new AmenityMask(bits, Set.copyOf(unencoded));
+    }
+
+    /**
+     * All amenity names in the order they were first stored.
+     */
+    public List<String> names() {
+        return snapshot.names();
+    }
+
+    /**
+     * Detached reference to a known amenity. It carries only the id, name and mask bit, which is all a join table row
+     * and the unit's amenity mask need, so sync can link units to amenities without loading them.
+     */
+    public Optional<UnitAmenity> reference(String amenityName) {
+        Snapshot current = snapshot;
+        return Optional.ofNullable(current.idsByName().get(amenityName))
+                .map(id -> new UnitAmenity(id, amenityName, current.maskBitsByName().get(amenityName), new HashSet<>()));
+    }
+
+    /**
+     * Adds stored amenities to the dictionary. Inside a transaction this waits for the commit, so a rolled back
+     * insert never leaves an id behind that doesn't exist in the database.
+     */
+    public void register(Collection<UnitAmenity> amenities) {
+        if (amenities.isEmpty())
+            return;
+        List<UnitAmenity> stored = List.copyOf(amenities);
+        AfterCommit.run(() -> extend(stored));
+    }
+
+    private synchronized void extend(List<UnitAmenity> amenities) {
+        snapshot = snapshot.with(amenities);
+        log.debug("Amenity dictionary extended with {}, {} known", amenities.stream().map(UnitAmenity::getAmenityName).toList(), snapshot.names().size());
+    }
+
+    private record Snapshot(Map<String, Long> idsByName, Map<Long, String> namesById, List<String> names,
+                            Map<String, Integer> maskBitsByName) {
+        static final Snapshot EMPTY = new Snapshot(Map.of(), Map.of(), List.of(), Map.of());
+
+        Snapshot with(List<UnitAmenity> amenities) {
+            Map<String, Long> ids = new HashMap<>(idsByName);
+            Map<Long, String> names = new HashMap<>(namesById);
+            List<String> ordered = new ArrayList<>(this.names);
+            Map<String, Integer> maskBits = new HashMap<>(maskBitsByName);
+            for (UnitAmenity amenity : amenities) {
+                if (ids.putIfAbsent(amenity.getAmenityName(), amenity.getId()) == null) {
+                    names.put(amenity.getId(), amenity.getAmenityName());
+                    if (amenity.getMaskBit() != null)
+                        maskBits.put(amenity.getAmenityName(), amenity.getMaskBit());
+                    ordered.add(amenity.getAmenityName());
+                }
+            }
+            return new Snapshot(Map.copyOf(ids), Map.copyOf(names), List.copyOf(ordered), Map.copyOf(maskBits));
+        }
+    }
+}
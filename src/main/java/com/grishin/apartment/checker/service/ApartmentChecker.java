@@ -2,106 +2,137 @@ package com.grishin.apartment.checker.service;
 
 import com.grishin.apartment.checker.config.ApartmentsConfig;
 import com.grishin.apartment.checker.config.CommunityConfig;
-import com.grishin.apartment.checker.dto.ApartmentFilter;
-import com.grishin.apartment.checker.dto.AptDTO;
+import com.grishin.apartment.checker.config.FetchConfig;
+import com.grishin.apartment.checker.dto.Changeset;
 import com.grishin.apartment.checker.dto.FloorPlanGroupDTO;
+import com.grishin.apartment.checker.dto.MatchableUnit;
+import com.grishin.apartment.checker.dto.SyncStats;
 import com.grishin.apartment.checker.dto.UnitMessage;
-import com.grishin.apartment.checker.storage.entity.UserFilterPreference;
 import com.grishin.apartment.checker.telegram.KeyboardUtils;
 import com.grishin.apartment.checker.telegram.MainBotController;
 import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
 
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class ApartmentChecker {
-    private final IrvineCompanyClient client;
+    private final CommunityFetcher communityFetcher;
+    private final FetchConfig fetchConfig;
     private final ApartmentsConfig apartmentsConfig;
     private final DataSyncService dataSyncService;
+    private final InventoryFingerprintService fingerprintService;
+    private final InventorySnapshotService inventorySnapshots;
+    private final SubscriptionMatcher subscriptionMatcher;
     private final MainBotController bot;
 
-    @Scheduled(fixedRateString = "${apartments.checkInterval}",  initialDelayString = "${apartments.checkInterval}", timeUnit = TimeUnit.MINUTES)
     public void checkForNewApartments() {
-        log.info("Checking for new apartments");
-        try {
-            Set<String> existingUnitIds = dataSyncService.getExistingUnits();
-            log.info("Found {} existing units", existingUnitIds.size());
+        checkForNewApartments(apartmentsConfig.getCommunities());
+    }
 
-            List<CommunityConfig> communities = apartmentsConfig.getCommunities();
+    public Map<CommunityConfig, SyncStats> checkForNewApartments(List<CommunityConfig> communities) {
+        log.info("Checking for new apartments in {} communities", communities.size());
+        Map<CommunityConfig, SyncStats> statsPerCommunity = new LinkedHashMap<>();
+        try {
+            Map<CommunityConfig, CommunitySync> syncedCommunities = syncCommunities(communities);
+
+            syncedCommunities.forEach((community, sync) -> {
+                statsPerCommunity.put(community, sync.changeset().stats());
+                try {
+                    notifyUsers(community, sync.changeset().addedUnitIds());
+                } catch (Exception e) {
+                    log.error("Error during notifications for community {}", community.getName(), e);
+                }
+            });
+            log.info("Processing is done");
+        } catch (Exception e) {
+            log.error("Error during apartment check", e);
+        }
+        return statsPerCommunity;
+    }
 
-            Map<String, Set<AptDTO>> newApartmentsPerCommunity = new HashMap<>();
+    private Map<CommunityConfig, CommunitySync> syncCommunities(List<CommunityConfig> communities) {
+        Map<CommunityConfig, CommunitySync> syncedCommunities = new LinkedHashMap<>();
+        if (fetchConfig.isStreaming()) {
             for (CommunityConfig community : communities) {
-                List<FloorPlanGroupDTO> newApartmentDataForCommunity = fetchAvailableApartments(community.getCommunityId());
-
-                Set<AptDTO> newApartmentsForCommunity = newApartmentDataForCommunity.stream()
-                        .flatMap(group -> group.getUnits().stream())
-                        .filter(unit -> !existingUnitIds.contains(unit.getObjectID())).collect(Collectors.toSet());
-
-                log.debug("New apartments added: {}", newApartmentsForCommunity);
-
-                newApartmentsPerCommunity.put(community.getName(), newApartmentsForCommunity);
-
-                dataSyncService.processApartmentData(newApartmentDataForCommunity, community.getCommunityId());
+                try {
+                    // Units are synced as they arrive, so there is no point where the whole response could be
+                    // skipped. Unchanged units are still skipped by their content hash. Chunks commit as they go,
+                    // so the fingerprint is dropped first, a stream failing halfway has changed the database too.
+                    fingerprintService.forget(community.getCommunityId());
+                    Changeset changeset = dataSyncService.processApartmentStream(community.getCommunityId(),
+                            consumer -> communityFetcher.stream(community, consumer));
+                    inventorySnapshots.apply(changeset);
+                    log.debug("New apartments added: {}", changeset.addedUnitIds());
+                    syncedCommunities.put(community, new CommunitySync(changeset));
+                } catch (Exception e) {
+                    log.error("Error during processing of community {}", community.getName(), e);
+                }
             }
+            return syncedCommunities;
+        }
 
-            for (CommunityConfig community : communities) {
-
-                log.info("Notifications for community: {}", community.getName());
-                List<UserFilterPreference> usersThatSelectedCommunity = dataSyncService.findUsersBySelectedCommunity(community);
-
-                for (UserFilterPreference userPref : usersThatSelectedCommunity) {
-                    log.info("Notifications for community: {}, user: {}", community.getName(), userPref.getUserId());
-                    ApartmentFilter userFilters = ApartmentFilter.createFrom(userPref);
-
-                    List<String> newApartmentsIdsForCommunity = newApartmentsPerCommunity.get(community.getName())
-                            .stream()
-                            .map(AptDTO::getObjectID)
-                            .toList();
-
-                    List<UnitMessage> filteredNewUnits = dataSyncService.findApartmentsByIdsWithFilters(userFilters, newApartmentsIdsForCommunity);
+        Map<CommunityConfig, List<FloorPlanGroupDTO>> fetchedCommunities = communityFetcher.fetchAll(communities);
+        fetchedCommunities.forEach((community, newApartmentDataForCommunity) -> {
+            try {
+                InventoryFingerprint fingerprint = InventoryFingerprint.of(newApartmentDataForCommunity);
+                if (fingerprintService.isUnchanged(community.getCommunityId(), fingerprint)) {
+                    log.info("Inventory of community {} is unchanged since the last cycle, skipping", community.getName());
+                    syncedCommunities.put(community, new CommunitySync(Changeset.EMPTY));
+                    return;
+                }
 
-                    log.info("Filtered units for notifications: {}", filteredNewUnits);
+                NormalizedInventory inventory = NormalizedInventory.of(newApartmentDataForCommunity);
+                Changeset changeset = dataSyncService.processInventory(inventory, community.getCommunityId());
+                fingerprintService.record(community.getCommunityId(), fingerprint);
+                inventorySnapshots.apply(changeset);
+                log.debug("New apartments added: {}", changeset.addedUnitIds());
+                syncedCommunities.put(community, new CommunitySync(changeset));
+            } catch (Exception e) {
+                log.error("Error during processing of community {}", community.getName(), e);
+            }
+        });
+        return syncedCommunities;
+    }
 
-                    for (UnitMessage newApartment : filteredNewUnits) {
-                        try {
-                            alertNewUnit(newApartment, userPref.getUserId());
-                        } catch (TelegramApiException e) {
-                            throw new RuntimeException(e);
-                        }
-                    }
+    private void notifyUsers(CommunityConfig community, List<String> newApartmentsIdsForCommunity) {
+        if (newApartmentsIdsForCommunity.isEmpty()) {
+            log.info("No new apartments for community: {}", community.getName());
+            return;
+        }
+        log.info("Notifications for community: {}", community.getName());
+        if (!subscriptionMatcher.hasSubscriptions(community.getCommunityId()))
+            return;
+        List<MatchableUnit> newUnits = inventorySnapshots.current().units(newApartmentsIdsForCommunity);
+
+        for (SubscriptionMatcher.Match match : subscriptionMatcher.match(newUnits)) {
+            Long userId = match.subscription().userId();
+            log.info("Notifications for community: {}, user: {}", community.getName(), userId);
+            log.info("Filtered units for notifications: {}", match.units());
+
+            for (UnitMessage newApartment : match.units()) {
+                try {
+                    alertNewUnit(newApartment, userId);
+                } catch (TelegramApiException e) {
+                    throw new RuntimeException(e);
                 }
             }
-            log.info("Processing is done");
-        } catch (Exception e) {
-            log.error("Error during apartment check", e);
         }
     }
 
-
     @PostConstruct
     public void syncApartmentData() {
         log.info("Starting apartment data synchronization");
         try {
-            List<CommunityConfig> communities = apartmentsConfig.getCommunities();
-            for (CommunityConfig community: communities) {
-                List<FloorPlanGroupDTO> apartmentData = fetchAvailableApartments(community.getCommunityId());
-
-                dataSyncService.processApartmentData(apartmentData, community.getCommunityId());
-                log.info("Synchronized apartment data for community {}", community.getName());
-            }
-            log.info("Apartment data synchronization completed successfully");
+            Map<CommunityConfig, CommunitySync> synchronizedCommunities = syncCommunities(apartmentsConfig.getCommunities());
+            log.info("Apartment data synchronization completed successfully for {} communities", synchronizedCommunities.size());
         } catch (Exception e) {
             log.error("Error during apartment data synchronization", e);
         }
@@ -112,9 +143,6 @@ public class ApartmentChecker {
         bot.sendMessage(userId, message);
     }
 
-    private List<FloorPlanGroupDTO> fetchAvailableApartments(String communityId) {
-        log.info("Fetching units for communityId: {}", communityId);
-        return client.fetchApartments(communityId, 10);
+    private record CommunitySync(Changeset changeset) {
     }
 }
-
@@ -0,0 +1,86 @@
+package com.grishin.apartment.checker.service;
+
+import com.grishin.apartment.checker.dto.AmenityMask;
+import com.grishin.apartment.checker.dto.ApartmentFilter;
+import com.grishin.apartment.checker.dto.MatchableUnit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * In-memory counterpart of {@link com.grishin.apartment.checker.storage.ApartmentSpecifications}. A filter is
+ * compiled once into a predicate over {@link MatchableUnit}, with the same null handling as the SQL joins.
+ */
+public final class ApartmentPredicates {
+
+    private ApartmentPredicates() {
+    }
+
+    /**
+     * @param amenities the filter's amenities, encoded by {@link AmenityDictionary#encode}
+     */
+    @SuppressWarnings("unchecked")
+    public static Predicate<MatchableUnit> filterBy(ApartmentFilter filter, AmenityMask amenities) {
+        List<Predicate<MatchableUnit>> predicates = new ArrayList<>();
+
+        // Community is an inner join in SQL, so a unit without one never matches
+        predicates.add(unit -> unit.communityId() != null);
+
+        if (filter.getCommunityId() != null) {
+            String communityId = filter.getCommunityId();
+            predicates.add(unit -> communityId.equals(unit.communityId()));
+        }
+
+        if (filter.getIsStudio() != null) {
+            Boolean studio = filter.getIsStudio();
+            predicates.add(unit -> studio.equals(unit.studio()));
+        }
+
+        atLeast(predicates, MatchableUnit::bedrooms, filter.getMinBedrooms());
+        atMost(predicates, MatchableUnit::bedrooms, filter.getMaxBedrooms());
+        atLeast(predicates, MatchableUnit::bathrooms, filter.getMinBathrooms());
+        atMost(predicates, MatchableUnit::bathrooms, filter.getMaxBathrooms());
+        atLeast(predicates, MatchableUnit::price, filter.getMinPrice());
+        atMost(predicates, MatchableUnit::price, filter.getMaxPrice());
+        atLeast(predicates, MatchableUnit::floor, filter.getMinFloor());
+        atMost(predicates, MatchableUnit::floor, filter.getMaxFloor());
+
+        if (filter.getFloorPlanNameContains() != null) {
+            String fragment = filter.getFloorPlanNameContains().toLowerCase();
+            predicates.add(unit -> unit.floorPlanName() != null && unit.floorPlanName().toLowerCase().contains(fragment));
+        }
+
+        if (!amenities.isEmpty())
+            predicates.add(unit -> amenities.isContainedIn(unit.amenityMask(), unit.amenityNames()));
+
+        atLeast(predicates, MatchableUnit::availableDate, MatchableUnit.toLocalDate(filter.getMinDate()));
+        atMost(predicates, MatchableUnit::availableDate, MatchableUnit.toLocalDate(filter.getMaxDate()));
+
+        Predicate<MatchableUnit>[] compiled = predicates.toArray(Predicate[]::new);
+        return unit -> {
+            for (Predicate<MatchableUnit> predicate : compiled) {
+                if (!predicate.test(unit))
+                    return false;
+            }
+            return true;
+        };
+    }
+
+    private static <T extends Comparable<? super T>> void atLeast(List<Predicate<MatchableUnit>> predicates, Function<MatchableUnit, T> field, T bound) {
+        if (bound != null)
+            predicates.add(unit -> {
+                T value = field.apply(unit);
+                return value != null && value.compareTo(bound) >= 0;
+            });
+    }
+
+    private static <T extends Comparable<? super T>> void atMost(List<Predicate<MatchableUnit>> predicates, Function<MatchableUnit, T> field, T bound) {
+        if (bound != null)
+            predicates.add(unit -> {
+                T value = field.apply(unit);
+                return value != null && value.compareTo(bound) <= 0;
+            });
+    }
+}
@@ -1,9 +1,21 @@
 package com.grishin.apartment.checker.service;
 
+import com.grishin.apartment.checker.dto.AptDTO;
 import com.grishin.apartment.checker.dto.FloorPlanGroupDTO;
 
 import java.util.List;
 
 public interface ApartmentsFetcherClient {
     List<FloorPlanGroupDTO> fetchApartments(String communityId, int unitsPerFloor);
+
+    /**
+     * Parses the response incrementally and hands every unit to {@code consumer} as soon as it is decoded,
+     * without materializing the floor plan groups.
+     */
+    void streamApartments(String communityId, int unitsPerFloor, UnitConsumer consumer);
+
+    @FunctionalInterface
+    interface UnitConsumer {
+        void accept(String groupType, AptDTO unit);
+    }
 }
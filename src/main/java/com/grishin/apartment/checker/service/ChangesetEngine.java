@@ -0,0 +1,85 @@
+package com.grishin.apartment.checker.service;
+
+import com.grishin.apartment.checker.dto.AptDTO;
+import com.grishin.apartment.checker.dto.Changeset;
+import com.grishin.apartment.checker.dto.InventoryChange;
+import com.grishin.apartment.checker.dto.LeaseTermDTO;
+import com.grishin.apartment.checker.storage.entity.LeasePrice;
+import com.grishin.apartment.checker.storage.entity.Unit;
+import com.grishin.apartment.checker.storage.entity.UnitAmenity;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Diffs a fetched community snapshot against the stored units, entirely in memory. Delisted units are
+ * found separately, since that needs the whole listing rather than the units at hand.
+ */
+public final class ChangesetEngine {
+
+    private ChangesetEngine() {
+    }
+
+    /**
+     * @param candidates inventory units to compare, the others are known to be unchanged
+     * @param storedUnits stored units for the candidates, with amenities and lease price loaded
+     * @param storedGroupTypes group types a stored unit is currently in
+     */
+    public static Changeset diff(NormalizedInventory inventory, Collection<AptDTO> candidates, Map<String, Unit> storedUnits,
+                                 Function<String, Set<String>> storedGroupTypes) {
+        List<InventoryChange> changes = new ArrayList<>();
+        for (AptDTO apt : candidates) {
+            Unit stored = storedUnits.get(apt.getObjectID());
+            if (stored == null) {
+                changes.add(new InventoryChange.UnitAdded(apt.getObjectID()));
+                continue;
+            }
+            diffLeasePrice(apt, stored.getUnitEarliestAvailable(), changes);
+            Set<String> attributes = changedAttributes(apt, inventory.getGroupTypes(apt.getObjectID()), storedGroupTypes.apply(apt.getObjectID()), stored);
+            if (!attributes.isEmpty())
+                changes.add(new InventoryChange.AttributesChanged(apt.getObjectID(), attributes));
+        }
+        return new Changeset(changes);
+    }
+
+    private static void diffLeasePrice(AptDTO apt, LeasePrice stored, List<InventoryChange> changes) {
+        LeaseTermDTO fetched = apt.getUnitEarliestAvailable();
+        if (fetched == null)
+            return;
+        Integer previousPrice = stored != null ? stored.getPrice() : null;
+        Integer previousTerm = stored != null ? stored.getTerm() : null;
+        if (!Objects.equals(previousPrice, fetched.getPrice()) || !Objects.equals(previousTerm, fetched.getTerm()))
+            changes.add(new InventoryChange.PriceChanged(apt.getObjectID(), previousPrice, fetched.getPrice()));
+        Long previousTimestamp = stored != null ? stored.getDateTimestamp() : null;
+        if (!Objects.equals(previousTimestamp, fetched.getDateTimeStamp()))
+            changes.add(new InventoryChange.AvailabilityDateChanged(apt.getObjectID(), previousTimestamp, fetched.getDateTimeStamp()));
+    }
+
+    private static Set<String> changedAttributes(AptDTO apt, Set<String> groupTypes, Set<String> storedGroupTypes, Unit stored) {
+        Set<String> changed = new LinkedHashSet<>();
+        compare(changed, "unitId", apt.getUnitID(), stored.getUnitId());
+        compare(changed, "unitMarketingName", apt.getUnitMarketingName(), stored.getUnitMarketingName());
+        compare(changed, "unitCrmId", apt.getUnitCRMID(), stored.getUnitCrmId());
+        compare(changed, "unitFloor", apt.getUnitFloor(), stored.getUnitFloor());
+        compare(changed, "unitSqft", apt.getUnitSqFt(), stored.getUnitSqft());
+        compare(changed, "unitTypeCode", apt.getUnitTypeCode(), stored.getUnitTypeCode());
+        compare(changed, "unitTypeName", apt.getUnitTypeName(), stored.getUnitTypeName());
+        compare(changed, "buildingNumber", apt.getBuildingNumber(), stored.getBuildingNumber());
+        compare(changed, "unitIsStudio", apt.isUnitIsStudio(), stored.getUnitIsStudio());
+        compare(changed, "unitHasDiscount", apt.isUnitHasDiscount(), stored.getUnitHasDiscount());
+        compare(changed, "featuredAmenity", apt.getFeaturedAmenity(), stored.getFeaturedAmenity());
+        compare(changed, "community", apt.getCommunityIDAEM(), stored.getCommunity() != null ? stored.getCommunity().getId() : null);
+        compare(changed, "floorPlan", apt.getFloorplanUniqueID(), stored.getFloorPlan() != null ? stored.getFloorPlan().getFloorPlanUniqueId() : null);
+
+        Set<String> amenities = apt.getUnitAmenities() != null ? new HashSet<>(apt.getUnitAmenities()) : Set.of();
+        compare(changed, "amenities", amenities, stored.getAmenities().stream().map(UnitAmenity::getAmenityName).collect(Collectors.toSet()));
+        compare(changed, "groups", groupTypes, storedGroupTypes);
+        return changed;
+    }
+
+    private static void compare(Set<String> changed, String attribute, Object fetched, Object stored) {
+        if (!Objects.equals(fetched, stored))
+            changed.add(attribute);
+    }
+}
@@ -0,0 +1,7 @@
+package com.grishin.apartment.checker.service;
+
+public class CircuitOpenException extends RuntimeException {
+    public CircuitOpenException(String communityId) {
+        super("Circuit breaker is open for community " + communityId);
+    }
+}
@@ -0,0 +1,80 @@
+package com.grishin.apartment.checker.service;
+
+import com.grishin.apartment.checker.config.CommunityConfig;
+import com.grishin.apartment.checker.config.FetchConfig;
+import com.grishin.apartment.checker.dto.FloorPlanGroupDTO;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Fetches communities concurrently on virtual threads, at most {@code apartments.fetch.parallelism} at a time.
+ * Communities that fail or exceed {@code apartments.fetch.timeout} are left out of the result.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CommunityFetcher {
+    private final ApartmentsFetcherClient client;
+    private final FetchConfig fetchConfig;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public Map<CommunityConfig, List<FloorPlanGroupDTO>> fetchAll(List<CommunityConfig> communities) {
+        Semaphore permits = new Semaphore(Math.max(1, fetchConfig.getParallelism()));
+
+        Map<CommunityConfig, Future<List<FloorPlanGroupDTO>>> futures = new LinkedHashMap<>();
+        for (CommunityConfig community : communities) {
+            futures.put(community, executor.submit(() -> fetchWithPermit(community, permits)));
+        }
+
+        Map<CommunityConfig, List<FloorPlanGroupDTO>> results = new LinkedHashMap<>();
+        futures.forEach((community, future) -> {
+            try {
+                results.put(community, future.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                future.cancel(true);
+            } catch (ExecutionException e) {
+                log.error("Failed to fetch units for community {}, skipping it this cycle", community.getName(), e.getCause());
+            }
+        });
+        log.info("Fetched {} of {} communities", results.size(), communities.size());
+        return results;
+    }
+
+    private List<FloorPlanGroupDTO> fetchWithPermit(CommunityConfig community, Semaphore permits) throws Exception {
+        permits.acquire();
+        try {
+            log.info("Fetching units for communityId: {}", community.getCommunityId());
+            Future<List<FloorPlanGroupDTO>> fetch = executor.submit(
+                    () -> client.fetchApartments(community.getCommunityId(), fetchConfig.getUnitsPerFloor()));
+            try {
+                return fetch.get(fetchConfig.getTimeout().toMillis(), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                fetch.cancel(true);
+                throw new TimeoutException("Fetching community " + community.getName() + " took longer than " + fetchConfig.getTimeout());
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof Exception cause ? cause : e;
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    public void stream(CommunityConfig community, ApartmentsFetcherClient.UnitConsumer consumer) {
+        log.info("Streaming units for communityId: {}", community.getCommunityId());
+        client.streamApartments(community.getCommunityId(), fetchConfig.getUnitsPerFloor(), consumer);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -1,80 +1,161 @@
 package com.grishin.apartment.checker.service;
 
-import com.grishin.apartment.checker.config.CommunityConfig;
+import com.grishin.apartment.checker.config.SyncConfig;
 import com.grishin.apartment.checker.dto.*;
 import com.grishin.apartment.checker.storage.*;
 import com.grishin.apartment.checker.storage.entity.*;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Optional;
-import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class DataSyncService {
 
-    private final CommunityRepository communityRepository;
-    private final FloorPlanRepository floorPlanRepository;
     private final FloorPlanGroupRepository floorPlanGroupRepository;
     private final UnitRepository unitRepository;
     private final UnitAmenityRepository unitAmenityRepository;
-    private final UserFilterService userFilterService;
-    private final UserFilterPreferenceRepository userFilterPreferenceRepository;
     private final LeasePriceRepository leasePriceRepository;
+    private final AmenityDictionary amenityDictionary;
+    private final ReferenceDataCache referenceData;
+    private final UserFilterService userFilterService;
+    private final GroupMembershipRepository groupMembershipRepository;
+    private final ListedUnitRepository listedUnitRepository;
+    private final SyncConfig syncConfig;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
 
     private static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("yyyyMMdd");
+    private static final int REMOVAL_CHUNK_SIZE = 1000;
+    private static final int LOOKUP_CHUNK_SIZE = 1000;
 
-    @Transactional
-    public void processApartmentData(List<FloorPlanGroupDTO> apartmentDataList, String communityId) {
-        log.info("Processing apartment data for community: {}", communityId);
-        Set<String> processedUnitIds = new HashSet<>();
-        int counter = 1;
-        for (FloorPlanGroupDTO apartmentData : apartmentDataList) {
-            log.debug("Processing FloorPlanGroupDTO #{} type {}", counter++, apartmentData.getGroupType());
-            
-            FloorPlanGroup group = getOrCreateFloorPlanGroup(apartmentData.getGroupType());
-            floorPlanGroupRepository.saveAndFlush(group);
-
-            for (AptDTO apt : apartmentData.getUnits()) {
-                processUnit(apt, group);
-                processedUnitIds.add(apt.getObjectID());
-            }
+    public Changeset processApartmentData(List<FloorPlanGroupDTO> apartmentDataList, String communityId) {
+        return processInventory(NormalizedInventory.of(apartmentDataList), communityId);
+    }
 
-            floorPlanGroupRepository.save(group);
-        }
-        handleRemovedUnits(processedUnitIds, communityId);
-        log.debug("Processing apartment data for community: {} is finished", communityId);
+    /**
+     * Syncs units while the listing is still being read. New units are collapsed by {@code objectID} as they
+     * arrive and synced {@code apartments.sync.chunkSize} at a time, so the listing is never held in memory, see
+     * {@link StreamedInventory}.
+     */
+    public Changeset processApartmentStream(String communityId, Consumer<ApartmentsFetcherClient.UnitConsumer> source) {
+        List<InventoryChange> changes = new ArrayList<>();
+        int batchSize = syncConfig.getChunkSize() > 0 ? syncConfig.getChunkSize() : Integer.MAX_VALUE;
+        StreamedInventory stream = new StreamedInventory(batchSize, batch -> {
+            List<String> unsettled = new ArrayList<>();
+            changes.addAll(syncUnits(batch, unsettled));
+            return unsettled;
+        });
+        source.accept(stream);
+        changes.addAll(syncUnits(stream.finish(), null));
+        log.info("Streamed apartment data for community: {}, {} units ({} duplicate occurrences collapsed)",
+                communityId, stream.getUnitIds().size(), stream.getDuplicates());
+        return finish(communityId, stream.getUnitIds(), changes);
     }
 
-    public Set<String> getExistingUnits() {
-        return unitRepository.findAll()
-                .stream().map(Unit::getObjectId).collect(Collectors.toSet());
+    /**
+     * Skips units whose content hash matches the stored one and writes the rest in chunks of
+     * {@code apartments.sync.chunkSize} units. Each chunk is preloaded with a fixed number of {@code IN (...)}
+     * queries, diffed in memory and committed on its own, and the persistence context is cleared after it,
+     * so memory doesn't grow with the community size. Called inside a transaction, the chunks join it.
+     */
+    public Changeset processInventory(NormalizedInventory inventory, String communityId) {
+        log.info("Processing apartment data for community: {}, {} units ({} duplicate occurrences collapsed)",
+                communityId, inventory.getUnitIds().size(), inventory.getDuplicates());
+        return finish(communityId, inventory.getUnitIds(), syncUnits(inventory, null));
     }
 
-    public List<UserFilterPreference> findUsersBySelectedCommunity(CommunityConfig community) {
-        return userFilterPreferenceRepository.findBySelectedCommunity(community.getCommunityId());
+    private Changeset finish(String communityId, Set<String> listedUnitIds, List<InventoryChange> changes) {
+        // Delisted units are only known once every chunk is in, so they are removed last against the full listing
+        changes.addAll(transactionTemplate.execute(status -> removeDelistedUnits(listedUnitIds, communityId)));
+
+        Changeset changeset = new Changeset(changes);
+        log.debug("Processing apartment data for community: {} is finished, {} changes, {}", communityId, changeset.changes().size(), changeset.stats());
+        return changeset;
     }
 
-    public List<Unit> findApartmentsWithFilters(ApartmentFilter filters) {
-        Specification<Unit> spec = ApartmentSpecifications.filterBy(filters);
-        return unitRepository.findAll(spec);
+    /**
+     * @param unsettled null once the units' groups are final. Otherwise collects the stored units that would lose a
+     *                  group, since the stream may still list them in it, and those are left unchanged
+     */
+    private List<InventoryChange> syncUnits(NormalizedInventory inventory, List<String> unsettled) {
+        Map<String, Long> contentHashes = new HashMap<>();
+        for (AptDTO apt : inventory.getUnits()) {
+            contentHashes.put(apt.getObjectID(), Fingerprints.unit(apt, inventory.getGroupTypes(apt.getObjectID())));
+        }
+        Map<String, Long> storedHashes = findContentHashes(inventory.getUnitIds());
+        List<AptDTO> changed = inventory.getUnits().stream()
+                .filter(apt -> !Objects.equals(storedHashes.get(apt.getObjectID()), contentHashes.get(apt.getObjectID())))
+                .toList();
+        log.debug("{} of {} units changed since the last sync", changed.size(), contentHashes.size());
+
+        List<InventoryChange> changes = new ArrayList<>();
+        int chunkSize = syncConfig.getChunkSize() > 0 ? syncConfig.getChunkSize() : Math.max(1, changed.size());
+        for (int from = 0; from < changed.size(); from += chunkSize) {
+            List<AptDTO> chunk = changed.subList(from, Math.min(from + chunkSize, changed.size()));
+            changes.addAll(transactionTemplate.execute(status -> syncChunk(inventory, chunk, storedHashes.keySet(), contentHashes, unsettled)));
+        }
+        return changes;
     }
 
-    @Transactional
-    public List<UnitMessage> findApartmentsByIdsWithFilters(ApartmentFilter filters, List<String> ids) {
-        Specification<Unit> spec = ApartmentSpecifications.filterBy(filters, ids);
-        List<Unit> unitEntities = unitRepository.findAll(spec);
-        return unitEntities.stream().map(UnitMessage::fromEntity).toList();
+    private List<InventoryChange> syncChunk(NormalizedInventory inventory, List<AptDTO> chunk, Set<String> storedIds,
+                                            Map<String, Long> contentHashes, List<String> unsettled) {
+        Preloaded preloaded = preload(inventory, chunk, storedIds);
+        List<AptDTO> settled = new ArrayList<>(chunk.size());
+        for (AptDTO apt : chunk) {
+            String objectId = apt.getObjectID();
+            if (unsettled != null && preloaded.units().containsKey(objectId)
+                    && !inventory.getGroupTypes(objectId).containsAll(preloaded.membership().groupTypes(objectId)))
+                unsettled.add(objectId);
+            else
+                settled.add(apt);
+        }
+        Changeset changeset = ChangesetEngine.diff(inventory, settled, preloaded.units(), preloaded.membership()::groupTypes);
+        // A unit can change both price and availability date, its lease price is rewritten once for both
+        Set<String> leaseChanged = new LinkedHashSet<>();
+        for (InventoryChange change : changeset.changes()) {
+            AptDTO apt = inventory.getUnit(change.objectId());
+            switch (change) {
+                case InventoryChange.UnitAdded added -> addUnit(apt, inventory.getGroupTypes(added.objectId()), preloaded);
+                case InventoryChange.PriceChanged changed -> leaseChanged.add(changed.objectId());
+                case InventoryChange.AvailabilityDateChanged changed -> leaseChanged.add(changed.objectId());
+                case InventoryChange.AttributesChanged changed -> updateAttributes(apt, preloaded.units().get(changed.objectId()),
+                        changed.attributes(), inventory.getGroupTypes(changed.objectId()), preloaded);
+                case InventoryChange.UnitRemoved removed -> throw new IllegalStateException("Unexpected removal in a chunk: " + removed);
+            }
+        }
+        for (String objectId : leaseChanged) {
+            applyLeasePrice(preloaded.units().get(objectId), inventory.getUnit(objectId).getUnitEarliestAvailable());
+        }
+        for (AptDTO apt : settled) {
+            preloaded.units().get(apt.getObjectID()).setContentHash(contentHashes.get(apt.getObjectID()));
+        }
+        amenityDictionary.register(preloaded.createdAmenities());
+
+        entityManager.flush();
+        preloaded.membership().write(groupMembershipRepository);
+        meterRegistry.summary("apartments.sync.chunk.entities").record(entityManager.unwrap(Session.class).getStatistics().getEntityCount());
+        entityManager.clear();
+        return changeset.changes();
+    }
+
+    public List<Unit> findApartmentsWithFilters(ApartmentFilter filters) {
+        Specification<Unit> spec = ApartmentSpecifications.filterBy(filters, amenityDictionary.encode(filters.getAmenities()));
+        return unitRepository.findAll(spec);
     }
 
     @Transactional
@@ -101,48 +182,138 @@ public class DataSyncService {
         return group;
     }
 
-    private void processUnit(AptDTO aptDto, FloorPlanGroup group) {
-        log.debug("Processing unit: {}", aptDto.getUnitID());
-        Community community = getOrCreateCommunity(aptDto);
-        
-        FloorPlan floorPlan = getOrCreateFloorPlan(aptDto);
-        
-        Unit unit = getOrCreateUnit(aptDto, community, floorPlan);
-
-        addUnitToGroup(unit, group);
-        addFloorPlanToGroup(floorPlan, group);
-        
-        processUnitAmenities(unit, aptDto.getUnitAmenities());
-        
-        processLeasePrice(unit, aptDto.getUnitEarliestAvailable());
+    private Map<String, Long> findContentHashes(Set<String> objectIds) {
+        Map<String, Long> hashes = new HashMap<>();
+        List<String> ids = new ArrayList<>(objectIds);
+        // Scalar projection: unchanged units never enter the persistence context
+        for (int from = 0; from < ids.size(); from += LOOKUP_CHUNK_SIZE) {
+            List<String> chunk = ids.subList(from, Math.min(from + LOOKUP_CHUNK_SIZE, ids.size()));
+            for (UnitRepository.ContentHash hash : unitRepository.findContentHashesByObjectIdIn(chunk)) {
+                hashes.put(hash.getObjectId(), hash.getContentHash());
+            }
+        }
+        return hashes;
     }
 
-    private void addUnitToGroup(Unit unit, FloorPlanGroup group) {
-        boolean unitAlreadyInGroup = group.getUnits().stream()
-                .anyMatch(u -> u.getObjectId().equals(unit.getObjectId()));
-
-        if (!unitAlreadyInGroup) {
-            log.debug("Adding unit {} to group: {}", unit.getObjectId(), group.getGroupId());
-            group.getUnits().add(unit);
-            unit.getGroups().add(group);
+    /**
+     * @param changed units whose content hash differs from the stored one
+     * @param storedIds ids of the inventory units that already have a row
+     */
+    private Preloaded preload(NormalizedInventory inventory, List<AptDTO> changed, Set<String> storedIds) {
+        Set<String> communityIds = new HashSet<>();
+        Set<String> floorPlanIds = new HashSet<>();
+        Set<String> amenityNames = new HashSet<>();
+        Set<String> changedStoredIds = new HashSet<>();
+        Set<String> changedGroupTypes = new LinkedHashSet<>();
+        for (AptDTO apt : changed) {
+            communityIds.add(apt.getCommunityIDAEM());
+            floorPlanIds.add(apt.getFloorplanUniqueID());
+            if (apt.getUnitAmenities() != null)
+                amenityNames.addAll(apt.getUnitAmenities());
+            if (storedIds.contains(apt.getObjectID()))
+                changedStoredIds.add(apt.getObjectID());
+            changedGroupTypes.addAll(inventory.getGroupTypes(apt.getObjectID()));
+        }
+        Set<String> groupTypes = new HashSet<>(changedGroupTypes);
+        groupTypes.remove(null);
+
+        Map<String, Unit> units = changedStoredIds.isEmpty()
+                ? new HashMap<>()
+                : index(unitRepository.findWithDetailsByObjectIdIn(changedStoredIds), Unit::getObjectId);
+        // Reference rows seen by an earlier sync are linked by reference, only unseen keys are queried
+        Map<String, FloorPlanGroup> groups = referenceData.groups(groupTypes);
+        Map<String, Community> communities = referenceData.communities(communityIds);
+        Map<String, FloorPlan> floorPlans = referenceData.floorPlans(floorPlanIds);
+        Map<String, UnitAmenity> amenities = resolveAmenities(amenityNames);
+        log.debug("Preloaded {} units, {} groups, {} communities, {} floor plans, {} amenities",
+                units.size(), groups.size(), communities.size(), floorPlans.size(), amenities.size());
+
+        for (String groupType : changedGroupTypes) {
+            groups.computeIfAbsent(groupType, type -> {
+                FloorPlanGroup group = floorPlanGroupRepository.save(getOrCreateFloorPlanGroup(type));
+                referenceData.registerGroup(group);
+                return group;
+            });
         }
+        // Membership comes straight from the join tables, the entity collections on either side stay uninitialized
+        GroupMembership membership = new GroupMembership(
+                groupMembershipRepository.findGroupsByUnit(changedStoredIds),
+                groupMembershipRepository.findFloorPlansByGroup(groups.values().stream().map(FloorPlanGroup::getGroupId).toList()));
+        return new Preloaded(groups, communities, floorPlans, units, amenities, membership, new ArrayList<>());
     }
 
-    private void addFloorPlanToGroup(FloorPlan floorPlan, FloorPlanGroup group) {
-        if (!group.getFloorPlans().contains(floorPlan)) {
-            log.debug("Adding floor plan {} to group: {}", floorPlan.getFloorPlanId(), group.getGroupId());
-            group.getFloorPlans().add(floorPlan);
-            floorPlan.getGroups().add(group);
+    private Map<String, UnitAmenity> resolveAmenities(Set<String> amenityNames) {
+        Map<String, UnitAmenity> amenities = new HashMap<>();
+        Set<String> unknown = new HashSet<>();
+        for (String amenityName : amenityNames) {
+            amenityDictionary.reference(amenityName).ifPresentOrElse(
+                    amenity -> amenities.put(amenityName, amenity),
+                    () -> unknown.add(amenityName));
+        }
+        if (!unknown.isEmpty()) {
+            // Stored but not in the dictionary yet, e.g. by a transaction that hasn't committed
+            List<UnitAmenity> stored = unitAmenityRepository.findByAmenityNameIn(unknown);
+            stored.forEach(amenity -> amenities.put(amenity.getAmenityName(), amenity));
+            amenityDictionary.register(stored);
         }
+        referenceData.record(ReferenceDataCache.AMENITY, amenityNames.size() - unknown.size(), unknown.size());
+        return amenities;
+    }
+
+    private static <T> Map<String, T> index(Iterable<T> entities, Function<T, String> key) {
+        Map<String, T> index = new HashMap<>();
+        entities.forEach(entity -> index.put(key.apply(entity), entity));
+        return index;
+    }
+
+    private void addUnit(AptDTO aptDTO, Set<String> groupTypes, Preloaded preloaded) {
+        log.debug("New unit {}", aptDTO.getObjectID());
+        Unit unit = new Unit();
+        unit.setObjectId(aptDTO.getObjectID());
+        copyAttributes(aptDTO, unit, preloaded);
+        entityManager.persist(unit);
+        preloaded.units().put(unit.getObjectId(), unit);
+
+        syncGroups(unit, groupTypes, preloaded);
+        syncAmenities(unit, aptDTO.getUnitAmenities(), preloaded);
+        if (aptDTO.getUnitEarliestAvailable() != null)
+            applyLeasePrice(unit, aptDTO.getUnitEarliestAvailable());
+    }
+
+    private void updateAttributes(AptDTO aptDTO, Unit unit, Set<String> attributes, Set<String> groupTypes, Preloaded preloaded) {
+        log.debug("Unit {} changed: {}", unit.getObjectId(), attributes);
+        copyAttributes(aptDTO, unit, preloaded);
+        if (attributes.contains("groups") || attributes.contains("floorPlan"))
+            syncGroups(unit, groupTypes, preloaded);
+        if (attributes.contains("amenities"))
+            syncAmenities(unit, aptDTO.getUnitAmenities(), preloaded);
+    }
+
+    private void copyAttributes(AptDTO aptDTO, Unit unit, Preloaded preloaded) {
+        unit.setUnitId(aptDTO.getUnitID());
+        unit.setUnitMarketingName(aptDTO.getUnitMarketingName());
+        unit.setUnitCrmId(aptDTO.getUnitCRMID());
+        unit.setUnitFloor(aptDTO.getUnitFloor());
+        unit.setUnitSqft(aptDTO.getUnitSqFt());
+        unit.setUnitTypeCode(aptDTO.getUnitTypeCode());
+        unit.setUnitTypeName(aptDTO.getUnitTypeName());
+        unit.setBuildingNumber(aptDTO.getBuildingNumber());
+        unit.setUnitIsStudio(aptDTO.isUnitIsStudio());
+        unit.setUnitHasDiscount(aptDTO.isUnitHasDiscount());
+        unit.setFeaturedAmenity(aptDTO.getFeaturedAmenity());
+        unit.setCommunity(preloaded.communities().computeIfAbsent(aptDTO.getCommunityIDAEM(), id -> createCommunity(aptDTO)));
+        unit.setFloorPlan(preloaded.floorPlans().computeIfAbsent(aptDTO.getFloorplanUniqueID(), id -> createFloorPlan(aptDTO)));
     }
 
-    private Community getOrCreateCommunity(AptDTO aptDTO) {
-        Optional<Community> comOpt = communityRepository.findById(aptDTO.getCommunityIDAEM());
-        if (comOpt.isPresent()) {
-            log.debug("Community is present {}", comOpt.get().getId());
-            return comOpt.get();
+    private void syncGroups(Unit unit, Set<String> groupTypes, Preloaded preloaded) {
+        Map<String, Long> groupIds = new HashMap<>();
+        for (String groupType : groupTypes) {
+            groupIds.put(groupType, preloaded.groups().get(groupType).getGroupId());
         }
-        
+        preloaded.membership().reconcile(unit.getObjectId(), unit.getFloorPlan().getFloorPlanUniqueId(), groupIds);
+    }
+
+    private Community createCommunity(AptDTO aptDTO) {
         Community community = new Community();
 
         community.setId(aptDTO.getCommunityIDAEM());
@@ -151,16 +322,13 @@ public class DataSyncService {
         community.setPropertyAddress(aptDTO.getPropertyAddress());
         community.setPropertyZip(aptDTO.getPropertyZip());
         log.debug("Save new Community {}", community.getId());
-        return communityRepository.save(community);
+        // persist rather than save: with an assigned id save() merges, which costs a SELECT per new row
+        entityManager.persist(community);
+        referenceData.registerCommunity(community);
+        return community;
     }
 
-    private FloorPlan getOrCreateFloorPlan(AptDTO aptDTO) {
-        Optional<FloorPlan> floorPlanOpt = floorPlanRepository.findById(aptDTO.getFloorplanUniqueID());
-        if (floorPlanOpt.isPresent()) {
-            log.debug("FloorPlan is present {}", floorPlanOpt.get().getFloorPlanId());
-            return floorPlanOpt.get();
-        }
-
+    private FloorPlan createFloorPlan(AptDTO aptDTO) {
         FloorPlan floorPlan = new FloorPlan();
 
         floorPlan.setFloorPlanUniqueId(aptDTO.getFloorplanUniqueID());
@@ -175,84 +343,40 @@ public class DataSyncService {
         floorPlan.setFloorPlanDeposit(aptDTO.getFloorplanDeposit());
 
         log.debug("Save new FloorPlan {}", floorPlan.getFloorPlanId());
-        return floorPlanRepository.save(floorPlan);
-    }
-
-    private Unit getOrCreateUnit(AptDTO aptDTO, Community community, FloorPlan floorPlan) {
-        Optional<Unit> unitOpt = unitRepository.findById(aptDTO.getObjectID());
-        if (unitOpt.isPresent()) {
-            log.debug("Unit is present {}", unitOpt.get().getObjectId());
-            return unitOpt.get();
-        }
-
-        Unit unit = new Unit();
-
-        unit.setUnitId(aptDTO.getUnitID());
-        unit.setUnitMarketingName(aptDTO.getUnitMarketingName());
-        unit.setUnitCrmId(aptDTO.getUnitCRMID());
-        unit.setUnitFloor(aptDTO.getUnitFloor());
-        unit.setUnitSqft(aptDTO.getUnitSqFt());
-        unit.setUnitTypeCode(aptDTO.getUnitTypeCode());
-        unit.setUnitTypeName(aptDTO.getUnitTypeName());
-        unit.setBuildingNumber(aptDTO.getBuildingNumber());
-        unit.setUnitIsStudio(aptDTO.isUnitIsStudio());
-        unit.setUnitHasDiscount(aptDTO.isUnitHasDiscount());
-        unit.setFeaturedAmenity(aptDTO.getFeaturedAmenity());
-        unit.setObjectId(aptDTO.getObjectID());
-        unit.setCommunity(community);
-        unit.setFloorPlan(floorPlan);
-
-        log.debug("New unit {}", unit.getObjectId());
-        return unitRepository.save(unit);
+        entityManager.persist(floorPlan);
+        referenceData.registerFloorPlan(floorPlan);
+        return floorPlan;
     }
 
-    private void processUnitAmenities(Unit unit, List<String> amenityNames) {
-        if (amenityNames == null || amenityNames.isEmpty()) {
-            return;
-        }
-
-        for (String amenityName : amenityNames) {
-            Optional<UnitAmenity> amenityOptional = unitAmenityRepository.findByAmenityName(amenityName);
-            UnitAmenity amenity;
-            if (amenityOptional.isPresent()) {
-                log.debug("Amenity is present {}", amenityOptional.get().getId());
-                amenity = amenityOptional.get();
-                if (unit.getAmenities().contains(amenity)) {
-                    log.debug("Amenity {} already exists for unit {}", amenity.getId(), unit.getObjectId());
-                    continue;
-                }
-            }
-            else {
-                amenity = new UnitAmenity();
-                amenity.setAmenityName(amenityName);
-                log.debug("Saving new amenity {} for unit {}", amenityName, unit.getObjectId());
-                amenity = unitAmenityRepository.save(amenity);
-            }
-            unit.getAmenities().add(amenity);
-            log.debug("Amenity {} for unit {} saved", amenity.getId(), unit.getObjectId());
+    private void syncAmenities(Unit unit, List<String> amenityNames, Preloaded preloaded) {
+        Set<String> listed = amenityNames != null ? new HashSet<>(amenityNames) : Set.of();
+        unit.getAmenities().removeIf(amenity -> !listed.contains(amenity.getAmenityName()));
+
+        for (String amenityName : listed) {
+            UnitAmenity amenity = preloaded.amenities().computeIfAbsent(amenityName, name -> {
+                UnitAmenity newAmenity = new UnitAmenity();
+                newAmenity.setAmenityName(name);
+                newAmenity.setMaskBit(nextMaskBit());
+                log.debug("Saving new amenity {} with mask bit {} for unit {}", name, newAmenity.getMaskBit(), unit.getObjectId());
+                newAmenity = unitAmenityRepository.save(newAmenity);
+                preloaded.createdAmenities().add(newAmenity);
+                return newAmenity;
+            });
+            if (unit.getAmenities().add(amenity))
+                log.debug("Amenity {} for unit {} saved", amenity.getId(), unit.getObjectId());
         }
+        unit.setAmenityMask(AmenityMask.bitsOf(unit.getAmenities()));
     }
 
-    private void processLeasePrice(Unit unit, LeaseTermDTO earliestAvailable) {
-        log.debug("Save lease price {} for {} unit", earliestAvailable.getPrice(), unit.getObjectId());
-
-        LeasePrice earliestPrice = createLeasePrice(earliestAvailable, unit);
-        unit.setUnitEarliestAvailable(earliestPrice);
+    private int nextMaskBit() {
+        // New amenities are rare, and the query flushes the ones saved earlier in the chunk so they are counted
+        Integer max = unitAmenityRepository.findMaxMaskBit();
+        return max != null ? max + 1 : 0;
     }
 
-    private LeasePrice createLeasePrice(LeaseTermDTO leaseTermDTO, Unit unit) {
-        Optional<LeasePrice> priceOpt = leasePriceRepository.findByUnitObjectId(unit.getObjectId());
-        LeasePrice leasePrice;
-        if (priceOpt.isPresent()) {
-            leasePrice = priceOpt.get();
-            log.debug("Lease leasePrice already exists for unit {}", unit.getObjectId());
-            if (leasePrice.getPrice().equals(leaseTermDTO.getPrice()) &&
-                    leasePrice.getDateTimestamp().equals(leaseTermDTO.getDateTimeStamp())) {
-                log.debug("Lease leasePrice is the same, skip");
-                return leasePrice;
-            }
-        }
-        else {
+    private void applyLeasePrice(Unit unit, LeaseTermDTO leaseTermDTO) {
+        LeasePrice leasePrice = unit.getUnitEarliestAvailable();
+        if (leasePrice == null) {
             leasePrice = new LeasePrice();
             log.debug("Lease leasePrice does not exist for unit {}. Creating new", unit.getObjectId());
         }
@@ -266,29 +390,43 @@ public class DataSyncService {
         } catch (ParseException e) {
             log.warn("Could not parse date: {}", leaseTermDTO.getDate(), e);
         }
-        log.debug("Lease price created {}", leasePrice);
-        return leasePrice;
+        log.debug("Lease price for unit {} set to {}", unit.getObjectId(), leasePrice);
+        unit.setUnitEarliestAvailable(leasePrice);
     }
 
-    private void handleRemovedUnits(Set<String> processedUnitIds, String communityId) {
-        List<Unit> allUnits = unitRepository.findByCommunityId(communityId);
-        List<Unit> removedUnits = allUnits.stream()
-                .filter(unit -> !processedUnitIds.contains(unit.getObjectId()))
-                .toList();
+    private List<InventoryChange> removeDelistedUnits(Set<String> listedUnitIds, String communityId) {
+        if (communityId == null)
+            return List.of();
+        // Anti-join against the staged listing: only the delisted ids ever leave the database
+        listedUnitRepository.stage(communityId, listedUnitIds);
+        List<String> delistedIds = listedUnitRepository.findDelistedObjectIds(communityId);
+        listedUnitRepository.clear(communityId);
+        removeUnits(delistedIds);
+        return delistedIds.stream().<InventoryChange>map(InventoryChange.UnitRemoved::new).toList();
+    }
 
-        log.info("Detected {} removed units", removedUnits.size());
-        for (Unit unit : removedUnits) {
-            log.debug("Removing unit: {}", unit);
-            for (FloorPlanGroup group : unit.getGroups()) {
-                FloorPlanGroup managedGroup = floorPlanGroupRepository.findById(group.getGroupId()).orElseThrow();
-                managedGroup.getUnits().remove(unit);
-            }
-            unit.getGroups().clear();
-            for (UnitAmenity amenity : unit.getAmenities()) {
-                amenity.getUnits().remove(unit);
-            }
-            unit.getAmenities().clear();
-            unitRepository.delete(unit);
+    /**
+     * Removes units that are no longer listed with a few bulk statements per chunk of ids, so the work grows
+     * with the number of removed units rather than with the community size.
+     */
+    private void removeUnits(List<String> removedUnitIds) {
+        log.info("Detected {} removed units", removedUnitIds.size());
+        for (int from = 0; from < removedUnitIds.size(); from += REMOVAL_CHUNK_SIZE) {
+            List<String> chunk = removedUnitIds.subList(from, Math.min(from + REMOVAL_CHUNK_SIZE, removedUnitIds.size()));
+            log.debug("Removing units: {}", chunk);
+            unitRepository.deleteGroupMappings(chunk);
+            unitRepository.deleteAmenityMappings(chunk);
+            leasePriceRepository.deleteByUnitObjectIds(chunk);
+            unitRepository.deleteByObjectIds(chunk);
         }
     }
+
+    private record Preloaded(Map<String, FloorPlanGroup> groups,
+                             Map<String, Community> communities,
+                             Map<String, FloorPlan> floorPlans,
+                             Map<String, Unit> units,
+                             Map<String, UnitAmenity> amenities,
+                             GroupMembership membership,
+                             List<UnitAmenity> createdAmenities) {
+    }
 }
@@ -0,0 +1,92 @@
+package com.grishin.apartment.checker.service;
+
+import com.grishin.apartment.checker.dto.AptDTO;
+import com.grishin.apartment.checker.dto.LeaseTermDTO;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.List;
+
+public final class Fingerprints {
+    private static final char SEPARATOR = '\u001f';
+    /**
+     * Hashing runs once per unit, so each thread reuses its digest instead of looking one up every time.
+     */
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(Fingerprints::sha256);
+
+    private Fingerprints() {
+    }
+
+    /**
+     * Normalized form of the unit fields that end up in the database. Fields we don't store
+     * (lease price list, starting price) are left out, and amenities are sorted.
+     */
+    public static String canonical(AptDTO unit) {
+        StringBuilder sb = new StringBuilder(512);
+        append(sb, unit.getObjectID());
+        append(sb, unit.getUnitID());
+        append(sb, unit.getUnitCRMID());
+        append(sb, unit.getUnitMarketingName());
+        append(sb, unit.getUnitFloor());
+        append(sb, unit.getUnitSqFt());
+        append(sb, unit.getUnitTypeCode());
+        append(sb, unit.getUnitTypeName());
+        append(sb, unit.getBuildingNumber());
+        append(sb, unit.isUnitIsStudio());
+        append(sb, unit.isUnitHasDiscount());
+        append(sb, unit.getFeaturedAmenity());
+        append(sb, unit.getCommunityIDAEM());
+        append(sb, unit.getCommunityMarketingName());
+        append(sb, unit.getPropertyID());
+        append(sb, unit.getPropertyAddress());
+        append(sb, unit.getPropertyZip());
+        append(sb, unit.getFloorplanUniqueID());
+        append(sb, unit.getFloorplanID());
+        append(sb, unit.getFloorplanName());
+        append(sb, unit.getFloorplanCRMID());
+        append(sb, unit.getFloorplanPath());
+        append(sb, unit.getFloorplanSqFt());
+        append(sb, unit.getFloorplanBed());
+        append(sb, unit.getFloorplanBath());
+        append(sb, unit.getFloorplanDeposit());
+        List<String> amenities = unit.getUnitAmenities() == null ? List.of() : unit.getUnitAmenities().stream().sorted().toList();
+        append(sb, String.join(",", amenities));
+        LeaseTermDTO earliest = unit.getUnitEarliestAvailable();
+        if (earliest != null) {
+            append(sb, earliest.getDate());
+            append(sb, earliest.getDateTimeStamp());
+            append(sb, earliest.getPrice());
+            append(sb, earliest.getTerm());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Content hash of a unit row: its canonical fields, lease price included, plus the groups it is listed in.
+     */
+    public static long unit(AptDTO unit, Collection<String> groupTypes) {
+        StringBuilder sb = new StringBuilder(canonical(unit));
+        append(sb, String.join(",", groupTypes.stream().sorted().toList()));
+        return hash64(sb.toString());
+    }
+
+    public static long hash64(String value) {
+        byte[] digest = SHA_256.get().digest(value.getBytes(StandardCharsets.UTF_8));
+        return ByteBuffer.wrap(digest).getLong();
+    }
+
+    private static void append(StringBuilder sb, Object value) {
+        sb.append(value).append(SEPARATOR);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.grishin.apartment.checker.service;
+
+import com.grishin.apartment.checker.storage.GroupMembershipRepository;
+import com.grishin.apartment.checker.storage.GroupMembershipRepository.FloorPlanGroupEdge;
+import com.grishin.apartment.checker.storage.GroupMembershipRepository.UnitGroupEdge;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.*;
+
+/**
+ * Current group edges of a sync chunk, indexed per unit and per group, and the set diff against the fetched
+ * edges. Reconciling a unit costs O(its groups) no matter how many units a group has.
+ */
+@Slf4j
+final class GroupMembership {
+    private final Map<String, Map<String, Long>> groupsByUnit;
+    private final Map<Long, Set<String>> floorPlansByGroup;
+
+    private final List<UnitGroupEdge> addedUnitEdges = new ArrayList<>();
+    private final List<UnitGroupEdge> removedUnitEdges = new ArrayList<>();
+    private final List<FloorPlanGroupEdge> addedFloorPlanEdges = new ArrayList<>();
+
+    GroupMembership(Map<String, Map<String, Long>> groupsByUnit, Map<Long, Set<String>> floorPlansByGroup) {
+        this.groupsByUnit = groupsByUnit;
+        this.floorPlansByGroup = floorPlansByGroup;
+    }
+
+    Set<String> groupTypes(String objectId) {
+        return groupsByUnit.getOrDefault(objectId, Map.of()).keySet();
+    }
+
+    /**
+     * @param groupIds group type to group id of every group the unit is listed in now
+     */
+    void reconcile(String objectId, String floorPlanUniqueId, Map<String, Long> groupIds) {
+        Map<String, Long> current = groupsByUnit.computeIfAbsent(objectId, id -> new HashMap<>());
+        current.entrySet().removeIf(edge -> {
+            boolean stale = !groupIds.containsKey(edge.getKey());
+            if (stale) {
+                log.debug("Removing unit {} from group: {}", objectId, edge.getValue());
+                removedUnitEdges.add(new UnitGroupEdge(objectId, edge.getValue()));
+            }
+            return stale;
+        });
+        groupIds.forEach((groupType, groupId) -> {
+            if (current.putIfAbsent(groupType, groupId) == null) {
+                log.debug("Adding unit {} to group: {}", objectId, groupId);
+                addedUnitEdges.add(new UnitGroupEdge(objectId, groupId));
+            }
+            if (floorPlansByGroup.computeIfAbsent(groupId, id -> new HashSet<>()).add(floorPlanUniqueId)) {
+                log.debug("Adding floor plan {} to group: {}", floorPlanUniqueId, groupId);
+                addedFloorPlanEdges.add(new FloorPlanGroupEdge(groupId, floorPlanUniqueId));
+            }
+        });
+    }
+
+    /**
+     * Writes the diff. Runs after the chunk is flushed, since new edges reference rows inserted by it.
+     */
+    void write(GroupMembershipRepository repository) {
+        if (!removedUnitEdges.isEmpty())
+            repository.removeUnitEdges(removedUnitEdges);
+        if (!addedUnitEdges.isEmpty())
+            repository.addUnitEdges(addedUnitEdges);
+        if (!addedFloorPlanEdges.isEmpty())
+            repository.addFloorPlanEdges(addedFloorPlanEdges);
+        log.debug("Group membership written: {} unit edges added, {} removed, {} floor plan edges added",
+                addedUnitEdges.size(), removedUnitEdges.size(), addedFloorPlanEdges.size());
+    }
+}
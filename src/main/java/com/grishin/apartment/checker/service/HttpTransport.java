@@ -0,0 +1,122 @@
+package com.grishin.apartment.checker.service;
+
+import com.grishin.apartment.checker.config.HttpClientConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpClient;
+import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * HTTP transport used by {@link IrvineCompanyClient}: a pooled JDK {@link HttpClient} that negotiates HTTP/2
+ * when the upstream supports it, with connect/read timeouts and gzip/deflate response decoding.
+ * <p>
+ * The pool is sized by the {@code jdk.httpclient.connectionPoolSize} and {@code jdk.httpclient.keepalive.timeout}
+ * JVM options, see {@code start.sh}.
+ */
+@Slf4j
+public final class HttpTransport {
+    private static final String POOL_SIZE_PROPERTY = "jdk.httpclient.connectionPoolSize";
+    private static final String KEEP_ALIVE_PROPERTY = "jdk.httpclient.keepalive.timeout";
+
+    private HttpTransport() {
+    }
+
+    /**
+     * @param executor runs the client's asynchronous work, owned and closed by the caller
+     */
+    public static RestTemplate restTemplate(HttpClientConfig config, Executor executor) {
+        // The pool limits are JVM-wide and read once, when the first client is created, so they are JVM options
+        log.info("HTTP connection pool: size {}, keep-alive {}s",
+                System.getProperty(POOL_SIZE_PROPERTY, "unbounded"), System.getProperty(KEEP_ALIVE_PROPERTY, "1200"));
+
+        HttpClient httpClient = HttpClient.newBuilder()
+                .version(config.isHttp2() ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                .connectTimeout(config.getConnectTimeout())
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .executor(executor)
+                .build();
+
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+        requestFactory.setReadTimeout(config.getReadTimeout());
+
+        RestTemplate restTemplate = new RestTemplate(requestFactory);
+        if (config.isCompression()) {
+            restTemplate.getInterceptors().add(new DecompressingInterceptor());
+        }
+        return restTemplate;
+    }
+
+    static class DecompressingInterceptor implements ClientHttpRequestInterceptor {
+        @Override
+        public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+            request.getHeaders().set(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate");
+            ClientHttpResponse response = execution.execute(request, body);
+
+            String encoding = response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING);
+            if (encoding == null)
+                return response;
+            return switch (encoding.trim().toLowerCase(Locale.ROOT)) {
+                case "gzip", "x-gzip", "deflate" -> new DecompressedResponse(response, encoding.trim().toLowerCase(Locale.ROOT));
+                default -> response;
+            };
+        }
+    }
+
+    static class DecompressedResponse implements ClientHttpResponse {
+        private final ClientHttpResponse delegate;
+        private final String encoding;
+        private final HttpHeaders headers;
+        private InputStream body;
+
+        DecompressedResponse(ClientHttpResponse delegate, String encoding) {
+            this.delegate = delegate;
+            this.encoding = encoding;
+            this.headers = new HttpHeaders();
+            this.headers.putAll(delegate.getHeaders());
+            this.headers.remove(HttpHeaders.CONTENT_ENCODING);
+            this.headers.remove(HttpHeaders.CONTENT_LENGTH);
+        }
+
+        @Override
+        public HttpStatusCode getStatusCode() throws IOException {
+            return delegate.getStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return delegate.getStatusText();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            if (body == null) {
+                InputStream raw = delegate.getBody();
+                body = encoding.equals("deflate") ? new InflaterInputStream(raw) : new GZIPInputStream(raw);
+            }
+            return body;
+        }
+
+        @Override
+        public void close() {
+            delegate.close();
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.grishin.apartment.checker.service;
+
+import com.grishin.apartment.checker.dto.AptDTO;
+import com.grishin.apartment.checker.dto.FloorPlanGroupDTO;
+
+import java.util.List;
+
+/**
+ * Order-independent fingerprint of a buffered community response. Units are hashed together with their group
+ * type and combined with sum and xor, so the value doesn't depend on the order the upstream returns units in.
+ */
+public class InventoryFingerprint {
+    private long sum;
+    private long xor;
+    private int unitCount;
+
+    public static InventoryFingerprint of(List<FloorPlanGroupDTO> groups) {
+        InventoryFingerprint fingerprint = new InventoryFingerprint();
+        for (FloorPlanGroupDTO group : groups) {
+            for (AptDTO unit : group.getUnits()) {
+                fingerprint.add(group.getGroupType(), unit);
+            }
+        }
+        return fingerprint;
+    }
+
+    public void add(String groupType, AptDTO unit) {
+        long hash = Fingerprints.hash64(groupType + '\u001f' + Fingerprints.canonical(unit));
+        sum += hash;
+        xor ^= hash;
+        unitCount++;
+    }
+
+    public int getUnitCount() {
+        return unitCount;
+    }
+
+    public String value() {
+        return "%016x%016x-%d".formatted(sum, xor, unitCount);
+    }
+}
@@ -0,0 +1,67 @@
+package com.grishin.apartment.checker.service;
+
+import com.grishin.apartment.checker.storage.CommunityFingerprintRepository;
+import com.grishin.apartment.checker.storage.entity.CommunityFingerprint;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.grishin.apartment.checker.telegram.MainBotController.BOT_TIME_ZONE;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class InventoryFingerprintService {
+    /**
+     * Cached in place of a fingerprint known not to be stored.
+     */
+    private static final String NONE = "";
+
+    private final CommunityFingerprintRepository fingerprintRepository;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, String> fingerprints = new ConcurrentHashMap<>();
+
+    public boolean isUnchanged(String communityId, InventoryFingerprint fingerprint) {
+        String previous = Optional.ofNullable(fingerprints.get(communityId))
+                .or(() -> fingerprintRepository.findById(communityId).map(CommunityFingerprint::getFingerprint))
+                .orElse(NONE);
+        fingerprints.put(communityId, previous);
+
+        boolean unchanged = fingerprint.value().equals(previous);
+        meterRegistry.counter("apartments.sync.cycles",
+                "community", communityId,
+                "outcome", unchanged ? "skipped" : "processed").increment();
+        return unchanged;
+    }
+
+    public void record(String communityId, InventoryFingerprint fingerprint) {
+        String value = fingerprint.value();
+        if (value.equals(fingerprints.get(communityId)))
+            return;
+        fingerprintRepository.save(new CommunityFingerprint(communityId, value, fingerprint.getUnitCount(), LocalDateTime.now(BOT_TIME_ZONE)));
+        fingerprints.put(communityId, value);
+        log.debug("Recorded fingerprint {} for community {}", value, communityId);
+    }
+
+    /**
+     * Drops the stored fingerprint of a community about to be synced without one, so the next buffered cycle
+     * can't skip against a response the database no longer matches. The row is deleted once, after that the
+     * cache knows there is none.
+     */
+    public void forget(String communityId) {
+        if (!NONE.equals(fingerprints.put(communityId, NONE)))
+            fingerprintRepository.deleteById(communityId);
+    }
+
+    public void evictAll() {
+        fingerprints.clear();
+        fingerprintRepository.deleteAll();
+    }
+}
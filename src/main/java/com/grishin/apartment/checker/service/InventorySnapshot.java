@@ -0,0 +1,377 @@
+package com.grishin.apartment.checker.service;
+
+import com.grishin.apartment.checker.dto.AmenityMask;
+import com.grishin.apartment.checker.dto.ApartmentFilter;
+import com.grishin.apartment.checker.dto.MatchableUnit;
+import com.grishin.apartment.checker.dto.UnitSort;
+
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Immutable, column-oriented copy of the stored inventory. Every field a filter looks at is kept in a primitive
+ * array indexed by row, with a sentinel for null, and rows are grouped by community so a filter on one only scans
+ * that community's range. A snapshot is never changed, {@link #patch} builds the next one with a higher
+ * {@link #epoch()}.
+ * <p>
+ * {@link #filter} accepts exactly the units {@link ApartmentPredicates} accepts.
+ */
+public final class InventorySnapshot {
+    static final InventorySnapshot EMPTY = of(List.of(), 0);
+
+    private static final int NULL = Integer.MIN_VALUE;
+    private static final byte NULL_FLAG = -1;
+
+    private final long epoch;
+    private final MatchableUnit[] rows;
+    private final Map<String, Integer> rowsByObjectId;
+    private final Map<String, Integer> communityOrdinals;
+    /**
+     * First row of each community by ordinal, plus the row count at the end.
+     */
+    private final int[] communityStart;
+    /**
+     * Lower-cased floor plan names by ordinal.
+     */
+    private final String[] floorPlanNames;
+    private final int[] floorPlan;
+    private final byte[] studio;
+    private final int[] bedrooms;
+    private final int[] bathrooms;
+    private final int[] price;
+    private final int[] floor;
+    private final int[] availableDay;
+    private final long[] amenityMask;
+    private final long[] centsPerSqft;
+
+    private InventorySnapshot(List<MatchableUnit> sorted, long epoch) {
+        this.epoch = epoch;
+        int size = sorted.size();
+        rows = sorted.toArray(MatchableUnit[]::new);
+        rowsByObjectId = HashMap.newHashMap(size);
+        communityOrdinals = new HashMap<>();
+        List<Integer> starts = new ArrayList<>();
+        Map<String, Integer> floorPlanOrdinals = new HashMap<>();
+        floorPlan = new int[size];
+        studio = new byte[size];
+        bedrooms = new int[size];
+        bathrooms = new int[size];
+        price = new int[size];
+        floor = new int[size];
+        availableDay = new int[size];
+        amenityMask = new long[size];
+        centsPerSqft = new long[size];
+
+        for (int row = 0; row < size; row++) {
+            MatchableUnit unit = rows[row];
+            rowsByObjectId.put(unit.objectId(), row);
+            if (!communityOrdinals.containsKey(unit.communityId())) {
+                communityOrdinals.put(unit.communityId(), starts.size());
+                starts.add(row);
+            }
+            floorPlan[row] = unit.floorPlanName() != null
+                    ? floorPlanOrdinals.computeIfAbsent(unit.floorPlanName().toLowerCase(), name -> floorPlanOrdinals.size())
+                    : NULL;
+            studio[row] = unit.studio() != null ? flag(unit.studio()) : NULL_FLAG;
+            bedrooms[row] = orNull(unit.bedrooms());
+            bathrooms[row] = orNull(unit.bathrooms());
+            price[row] = orNull(unit.price());
+            floor[row] = orNull(unit.floor());
+            availableDay[row] = epochDay(unit.availableDate());
+            amenityMask[row] = unit.amenityMask();
+            centsPerSqft[row] = centsPerSqft(unit);
+        }
+
+        communityStart = new int[starts.size() + 1];
+        for (int i = 0; i < starts.size(); i++)
+            communityStart[i] = starts.get(i);
+        communityStart[starts.size()] = size;
+        floorPlanNames = new String[floorPlanOrdinals.size()];
+        floorPlanOrdinals.forEach((name, ordinal) -> floorPlanNames[ordinal] = name);
+    }
+
+    /**
+     * Units without a community are left out, the same as the inner join in SQL leaves them out of every result.
+     */
+    public static InventorySnapshot of(Collection<MatchableUnit> units) {
+        return of(units, 0);
+    }
+
+    static InventorySnapshot of(Collection<MatchableUnit> units, long epoch) {
+        return new InventorySnapshot(units.stream()
+                .filter(unit -> unit.communityId() != null)
+                .sorted(Comparator.comparing(MatchableUnit::communityId).thenComparing(MatchableUnit::objectId))
+                .toList(), epoch);
+    }
+
+    /**
+     * Builds the next snapshot with the changed units replaced. Only the row ranges of the communities the change
+     * touches are merged and re-sorted, every other community's rows are carried over in order. The columns are
+     * still rebuilt for all rows, so a patch costs one linear pass over the snapshot.
+     *
+     * @param dropped object ids of units no longer stored, or whose stored state changed
+     * @param loaded  the current state of the changed units
+     */
+    public InventorySnapshot patch(Collection<String> dropped, Collection<MatchableUnit> loaded) {
+        Set<String> replaced = new HashSet<>(dropped);
+        loaded.forEach(unit -> replaced.add(unit.objectId()));
+        TreeMap<String, List<MatchableUnit>> touched = new TreeMap<>();
+        for (String objectId : replaced) {
+            Integer row = rowsByObjectId.get(objectId);
+            if (row != null)
+                touched.computeIfAbsent(rows[row].communityId(), communityId -> new ArrayList<>());
+        }
+        for (MatchableUnit unit : loaded) {
+            if (unit.communityId() != null)
+                touched.computeIfAbsent(unit.communityId(), communityId -> new ArrayList<>()).add(unit);
+        }
+        touched.forEach((communityId, units) -> {
+            Integer ordinal = communityOrdinals.get(communityId);
+            if (ordinal != null) {
+                for (int row = communityStart[ordinal]; row < communityStart[ordinal + 1]; row++) {
+                    if (!replaced.contains(rows[row].objectId()))
+                        units.add(rows[row]);
+                }
+            }
+            units.sort(Comparator.comparing(MatchableUnit::objectId));
+        });
+
+        String[] communityIds = new String[communityOrdinals.size()];
+        communityOrdinals.forEach((communityId, ordinal) -> communityIds[ordinal] = communityId);
+        List<MatchableUnit> sorted = new ArrayList<>(rows.length + loaded.size());
+        int next = 0;
+        for (Map.Entry<String, List<MatchableUnit>> community : touched.entrySet()) {
+            while (next < communityIds.length && communityIds[next].compareTo(community.getKey()) < 0)
+                appendRows(sorted, next++);
+            if (next < communityIds.length && communityIds[next].equals(community.getKey()))
+                next++;
+            sorted.addAll(community.getValue());
+        }
+        while (next < communityIds.length)
+            appendRows(sorted, next++);
+        return new InventorySnapshot(sorted, epoch + 1);
+    }
+
+    private void appendRows(List<MatchableUnit> sorted, int ordinal) {
+        sorted.addAll(Arrays.asList(rows).subList(communityStart[ordinal], communityStart[ordinal + 1]));
+    }
+
+    /**
+     * Grows with every patch or rebuild, so anything derived from a snapshot can tell it is out of date.
+     */
+    public long epoch() {
+        return epoch;
+    }
+
+    public int size() {
+        return rows.length;
+    }
+
+    public int communities() {
+        return communityStart.length - 1;
+    }
+
+    /**
+     * @return units with the given object ids that are in the snapshot, in the given order
+     */
+    public List<MatchableUnit> units(Collection<String> objectIds) {
+        List<MatchableUnit> units = new ArrayList<>(objectIds.size());
+        for (String objectId : objectIds) {
+            Integer row = rowsByObjectId.get(objectId);
+            if (row != null)
+                units.add(rows[row]);
+        }
+        return units;
+    }
+
+    /**
+     * @param amenities the filter's amenities, encoded by {@link AmenityDictionary#encode}
+     * @return the matching units, ordered by community and object id
+     */
+    public List<MatchableUnit> filter(ApartmentFilter filter, AmenityMask amenities) {
+        int[] matched = select(filter, amenities);
+        List<MatchableUnit> units = new ArrayList<>(matched.length);
+        for (int row : matched)
+            units.add(rows[row]);
+        return units;
+    }
+
+    /**
+     * One page of the matching units in {@code sort} order, ties broken by object id. Only the page's units are
+     * kept while scanning, and the same scan counts every match, so no second pass is needed for the total.
+     *
+     * @param after the {@link Page#next()} cursor of the previous page, or {@code null} for the first page
+     */
+    public Page page(ApartmentFilter filter, AmenityMask amenities, UnitSort sort, Cursor after, int limit) {
+        Query query = new Query(filter, amenities);
+        Comparator<Integer> order = Comparator.<Integer>comparingLong(row -> sortKey(sort, row)).thenComparing(row -> rows[row].objectId());
+        // Max-heap of the smallest rows past the cursor, its head is the first to give way
+        PriorityQueue<Integer> kept = new PriorityQueue<>(limit + 1, order.reversed());
+        int total = 0;
+        int remaining = 0;
+        for (int row = query.from; row < query.to; row++) {
+            if (!query.accepts(row))
+                continue;
+            total++;
+            if (after != null && after.compareTo(sortKey(sort, row), rows[row].objectId()) >= 0)
+                continue;
+            remaining++;
+            kept.add(row);
+            if (kept.size() > limit)
+                kept.poll();
+        }
+
+        List<Integer> pageRows = new ArrayList<>(kept);
+        pageRows.sort(order);
+        List<MatchableUnit> units = pageRows.stream().map(row -> rows[row]).toList();
+        Cursor next = null;
+        if (remaining > limit) {
+            int last = pageRows.get(pageRows.size() - 1);
+            next = new Cursor(sortKey(sort, last), rows[last].objectId());
+        }
+        return new Page(units, total, next);
+    }
+
+    private int[] select(ApartmentFilter filter, AmenityMask amenities) {
+        Query query = new Query(filter, amenities);
+        int[] matched = new int[query.to - query.from];
+        int count = 0;
+        for (int row = query.from; row < query.to; row++) {
+            if (query.accepts(row))
+                matched[count++] = row;
+        }
+        return Arrays.copyOf(matched, count);
+    }
+
+    /**
+     * Unknown values sort last.
+     */
+    private long sortKey(UnitSort sort, int row) {
+        return switch (sort) {
+            case PRICE -> price[row] != NULL ? price[row] : Long.MAX_VALUE;
+            case AVAILABLE_DATE -> availableDay[row] != NULL ? availableDay[row] : Long.MAX_VALUE;
+            case PRICE_PER_SQFT -> centsPerSqft[row];
+        };
+    }
+
+    private static byte flag(boolean value) {
+        return (byte) (value ? 1 : 0);
+    }
+
+    private static int orNull(Integer value) {
+        return value != null ? value : NULL;
+    }
+
+    private static int epochDay(LocalDate date) {
+        return date != null ? Math.toIntExact(date.toEpochDay()) : NULL;
+    }
+
+    private static long centsPerSqft(MatchableUnit unit) {
+        Integer squareFeet = unit.message() != null ? unit.message().getSquareFeet() : null;
+        if (unit.price() == null || squareFeet == null || squareFeet <= 0)
+            return Long.MAX_VALUE;
+        return unit.price() * 100L / squareFeet;
+    }
+
+    private static Integer epochDayOrNull(Date date) {
+        LocalDate day = MatchableUnit.toLocalDate(date);
+        return day != null ? Math.toIntExact(day.toEpochDay()) : null;
+    }
+
+    /**
+     * A filter compiled against the snapshot's columns: the community's row range and per-column bounds.
+     */
+    private final class Query {
+        private final int from;
+        private final int to;
+        private final byte studioFlag;
+        private final Bound bedroomsBound;
+        private final Bound bathroomsBound;
+        private final Bound priceBound;
+        private final Bound floorBound;
+        private final Bound dayBound;
+        private final boolean[] floorPlanAccepted;
+        private final long amenityBits;
+        private final Set<String> unencoded;
+
+        Query(ApartmentFilter filter, AmenityMask amenities) {
+            Integer ordinal = filter.getCommunityId() != null ? communityOrdinals.get(filter.getCommunityId()) : null;
+            if (filter.getCommunityId() == null) {
+                from = 0;
+                to = rows.length;
+            } else if (ordinal == null) {
+                from = 0;
+                to = 0;
+            } else {
+                from = communityStart[ordinal];
+                to = communityStart[ordinal + 1];
+            }
+            studioFlag = filter.getIsStudio() != null ? flag(filter.getIsStudio()) : NULL_FLAG;
+            bedroomsBound = Bound.of(filter.getMinBedrooms(), filter.getMaxBedrooms());
+            bathroomsBound = Bound.of(filter.getMinBathrooms(), filter.getMaxBathrooms());
+            priceBound = Bound.of(filter.getMinPrice(), filter.getMaxPrice());
+            floorBound = Bound.of(filter.getMinFloor(), filter.getMaxFloor());
+            dayBound = Bound.of(epochDayOrNull(filter.getMinDate()), epochDayOrNull(filter.getMaxDate()));
+            // A floor plan name is tested once per distinct name, not once per unit
+            if (filter.getFloorPlanNameContains() != null) {
+                String fragment = filter.getFloorPlanNameContains().toLowerCase();
+                floorPlanAccepted = new boolean[floorPlanNames.length];
+                for (int plan = 0; plan < floorPlanNames.length; plan++)
+                    floorPlanAccepted[plan] = floorPlanNames[plan].contains(fragment);
+            } else {
+                floorPlanAccepted = null;
+            }
+            amenityBits = amenities.bits();
+            unencoded = amenities.unencoded();
+        }
+
+        boolean accepts(int row) {
+            if (studioFlag != NULL_FLAG && studio[row] != studioFlag)
+                return false;
+            if (bedroomsBound.rejects(bedrooms[row]) || bathroomsBound.rejects(bathrooms[row])
+                    || priceBound.rejects(price[row]) || floorBound.rejects(floor[row]) || dayBound.rejects(availableDay[row]))
+                return false;
+            if (floorPlanAccepted != null && (floorPlan[row] == NULL || !floorPlanAccepted[floorPlan[row]]))
+                return false;
+            if ((amenityMask[row] & amenityBits) != amenityBits)
+                return false;
+            return unencoded.isEmpty() || rows[row].amenityNames().containsAll(unencoded);
+        }
+    }
+
+    /**
+     * Position after the last unit of a page.
+     */
+    public record Cursor(long sortKey, String objectId) {
+
+        int compareTo(long otherKey, String otherObjectId) {
+            int byKey = Long.compare(sortKey, otherKey);
+            return byKey != 0 ? byKey : objectId.compareTo(otherObjectId);
+        }
+    }
+
+    /**
+     * @param total every matching unit, not just the ones on this page
+     * @param next  cursor for the following page, {@code null} on the last one
+     */
+    public record Page(List<MatchableUnit> units, int total, Cursor next) {
+        public static final Page EMPTY = new Page(List.of(), 0, null);
+    }
+
+    /**
+     * Inclusive range on an int column. A bounded column rejects null the way a SQL comparison does.
+     */
+    private record Bound(boolean active, int min, int max) {
+        static final Bound NONE = new Bound(false, Integer.MIN_VALUE, Integer.MAX_VALUE);
+
+        static Bound of(Integer min, Integer max) {
+            if (min == null && max == null)
+                return NONE;
+            return new Bound(true, min != null ? min : Integer.MIN_VALUE, max != null ? max : Integer.MAX_VALUE);
+        }
+
+        boolean rejects(int value) {
+            return active && (value == NULL || value < min || value > max);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.grishin.apartment.checker.service;
+
+import com.grishin.apartment.checker.dto.Changeset;
+import com.grishin.apartment.checker.dto.InventoryChange;
+import com.grishin.apartment.checker.dto.MatchableUnit;
+import com.grishin.apartment.checker.storage.UnitRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Holds the current {@link InventorySnapshot} for listings and notifications. Built at startup, patched with the
+ * changes of each sync and swapped in whole, so readers never touch the database and never wait for a sync.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class InventorySnapshotService {
+    private static final int LOOKUP_CHUNK_SIZE = 1000;
+
+    private final UnitRepository unitRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+
+    private final Object swapLock = new Object();
+    private volatile InventorySnapshot current = InventorySnapshot.EMPTY;
+
+    @PostConstruct
+    public void load() {
+        Gauge.builder("apartments.snapshot.units", this, service -> service.current().size())
+                .description("Units in the inventory snapshot")
+                .register(meterRegistry);
+        List<MatchableUnit> units = meterRegistry.timer("apartments.snapshot.build", "mode", "full")
+                .record(() -> loadUnits(unitRepository.findAllObjectIds()));
+        InventorySnapshot snapshot;
+        synchronized (swapLock) {
+            snapshot = InventorySnapshot.of(units, current.epoch() + 1);
+            current = snapshot;
+        }
+        log.info("Inventory snapshot built with {} units in {} communities", snapshot.size(), snapshot.communities());
+    }
+
+    public InventorySnapshot current() {
+        return current;
+    }
+
+    /**
+     * Patches the snapshot with a sync's changes: removed units are dropped and every other changed unit is
+     * reloaded. Must be called once the sync has committed, which {@link DataSyncService#processInventory} has
+     * on return.
+     */
+    public void apply(Changeset changeset) {
+        if (changeset.isEmpty())
+            return;
+        Set<String> changed = changeset.changes().stream().map(InventoryChange::objectId).collect(Collectors.toSet());
+        Set<String> removed = Set.copyOf(changeset.removedUnitIds());
+        List<String> reloaded = changed.stream().filter(objectId -> !removed.contains(objectId)).toList();
+        synchronized (swapLock) {
+            InventorySnapshot snapshot = meterRegistry.timer("apartments.snapshot.build", "mode", "patch")
+                    .record(() -> current.patch(changed, loadUnits(reloaded)));
+            current = snapshot;
+        }
+        log.debug("Inventory snapshot patched: {} units reloaded, {} removed, {} units", reloaded.size(), removed.size(), current.size());
+    }
+
+    /**
+     * Loads units with everything subscription filters and notifications need as projections, two queries per chunk
+     * and no entities. Both queries of a chunk run in one transaction, so they see the same units.
+     */
+    public List<MatchableUnit> loadUnits(Collection<String> objectIds) {
+        List<String> ids = new ArrayList<>(objectIds);
+        List<MatchableUnit> units = new ArrayList<>(ids.size());
+        for (int from = 0; from < ids.size(); from += LOOKUP_CHUNK_SIZE) {
+            List<String> chunk = ids.subList(from, Math.min(from + LOOKUP_CHUNK_SIZE, ids.size()));
+            units.addAll(transactionTemplate.execute(status -> MatchableUnit.fromRows(
+                    unitRepository.findRowsByObjectIdIn(chunk), unitRepository.findAmenityNamesByObjectIdIn(chunk))));
+        }
+        return units;
+    }
+}
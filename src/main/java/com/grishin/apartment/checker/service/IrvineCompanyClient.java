@@ -1,33 +1,65 @@
 package com.grishin.apartment.checker.service;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.grishin.apartment.checker.config.ApartmentsConfig;
 import com.grishin.apartment.checker.dto.ApartmentSearchRequest;
+import com.grishin.apartment.checker.dto.AptDTO;
 import com.grishin.apartment.checker.dto.FloorPlanGroupDTO;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
-import java.util.Arrays;
-import java.util.List;
-import java.util.Objects;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
 
 @Service
 public class IrvineCompanyClient implements ApartmentsFetcherClient {
+    private static final TypeReference<List<String>> STRING_LIST = new TypeReference<>() {
+    };
+
     private final RestTemplate restTemplate;
     private final ApartmentsConfig apartmentsConfig;
+    private final ObjectMapper objectMapper;
 
     @Autowired
-    public IrvineCompanyClient(RestTemplate restTemplate, ApartmentsConfig apartmentsConfig) {
+    public IrvineCompanyClient(RestTemplate restTemplate, ApartmentsConfig apartmentsConfig, ObjectMapper objectMapper) {
         this.restTemplate = restTemplate;
         this.apartmentsConfig = apartmentsConfig;
+        this.objectMapper = objectMapper;
     }
 
     @Override
     public List<FloorPlanGroupDTO> fetchApartments(String communityId, int unitsPerFloor) {
+        return restTemplate.execute(
+                apartmentsConfig.getUrl(),
+                HttpMethod.POST,
+                restTemplate.httpEntityCallback(createRequest(communityId, unitsPerFloor)),
+                response -> readGroupList(response.getBody())
+        );
+    }
+
+    @Override
+    public void streamApartments(String communityId, int unitsPerFloor, UnitConsumer consumer) {
+        restTemplate.execute(
+                apartmentsConfig.getUrl(),
+                HttpMethod.POST,
+                restTemplate.httpEntityCallback(createRequest(communityId, unitsPerFloor)),
+                response -> {
+                    readGroups(response.getBody(), consumer);
+                    return null;
+                }
+        );
+    }
+
+    private HttpEntity<ApartmentSearchRequest> createRequest(String communityId, int unitsPerFloor) {
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.APPLICATION_JSON);
 
@@ -37,14 +69,100 @@ public class IrvineCompanyClient implements ApartmentsFetcherClient {
                 .env("prod")
                 .build();
 
-        HttpEntity<ApartmentSearchRequest> requestEntity = new HttpEntity<>(requestBody, headers);
+        return new HttpEntity<>(requestBody, headers);
+    }
 
-        ResponseEntity<FloorPlanGroupDTO[]> response = restTemplate.postForEntity(
-                apartmentsConfig.getUrl(),
-                requestEntity,
-                FloorPlanGroupDTO[].class
-        );
+    private List<FloorPlanGroupDTO> readGroupList(InputStream body) throws IOException {
+        try (JsonParser parser = objectMapper.createParser(body)) {
+            expectArray(parser);
+            List<FloorPlanGroupDTO> groups = new ArrayList<>();
+            // The same unit is listed in every floor-plan group it belongs to. Each repeat is replaced by the first
+            // instance as soon as it is parsed, so a response keeps one DTO per objectID
+            Map<String, AptDTO> interned = new HashMap<>();
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                groups.add(readGroup(parser, interned));
+            }
+            return groups;
+        }
+    }
+
+    private FloorPlanGroupDTO readGroup(JsonParser parser, Map<String, AptDTO> interned) throws IOException {
+        FloorPlanGroupDTO group = new FloorPlanGroupDTO();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "groupType" -> group.setGroupType(parser.getValueAsString());
+                case "floorPlanIds" -> group.setFloorPlanIds(objectMapper.readValue(parser, STRING_LIST));
+                case "unitIds" -> group.setUnitIds(objectMapper.readValue(parser, STRING_LIST));
+                case "units" -> {
+                    if (value == JsonToken.START_ARRAY) {
+                        List<AptDTO> units = new ArrayList<>();
+                        while (parser.nextToken() == JsonToken.START_OBJECT) {
+                            units.add(intern(interned, objectMapper.readValue(parser, AptDTO.class)));
+                        }
+                        group.setUnits(units);
+                    }
+                }
+                default -> parser.skipChildren();
+            }
+        }
+        return group;
+    }
+
+    /**
+     * Units are handed on as they are parsed, repeats included. Collapsing them is up to the consumer.
+     */
+    private void readGroups(InputStream body, UnitConsumer consumer) throws IOException {
+        try (JsonParser parser = objectMapper.createParser(body)) {
+            expectArray(parser);
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                streamGroup(parser, consumer);
+            }
+        }
+    }
+
+    private void streamGroup(JsonParser parser, UnitConsumer consumer) throws IOException {
+        String groupType = null;
+        // Only used if "units" arrives before "groupType", which the upstream doesn't do today
+        List<AptDTO> unitsWithoutGroup = new ArrayList<>();
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if ("groupType".equals(field)) {
+                groupType = parser.getValueAsString();
+                for (AptDTO unit : unitsWithoutGroup) {
+                    consumer.accept(groupType, unit);
+                }
+                unitsWithoutGroup.clear();
+            } else if ("units".equals(field) && value == JsonToken.START_ARRAY) {
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    AptDTO unit = objectMapper.readValue(parser, AptDTO.class);
+                    if (groupType != null)
+                        consumer.accept(groupType, unit);
+                    else
+                        unitsWithoutGroup.add(unit);
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+
+        for (AptDTO unit : unitsWithoutGroup) {
+            consumer.accept(null, unit);
+        }
+    }
+
+    private static void expectArray(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_ARRAY) {
+            throw new IOException("Expected an array of floor plan groups but got " + parser.currentToken());
+        }
+    }
 
-        return Arrays.asList(Objects.requireNonNull(response.getBody(), "Empty response"));
+    private static AptDTO intern(Map<String, AptDTO> interned, AptDTO unit) {
+        if (unit.getObjectID() == null)
+            return unit;
+        return interned.computeIfAbsent(unit.getObjectID(), id -> unit);
     }
 }
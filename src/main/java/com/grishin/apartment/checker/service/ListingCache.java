@@ -0,0 +1,148 @@
+package com.grishin.apartment.checker.service;
+
+import com.grishin.apartment.checker.config.ListingConfig;
+import com.grishin.apartment.checker.dto.UnitSort;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The part of a listing a chat has paged through: the ordered object ids up to one page past the furthest page
+ * visited, and the {@link InventorySnapshot.Cursor keyset cursor} after them. Flipping back, or to the page that
+ * was fetched ahead, renders from the ids without filtering again. Going further runs one
+ * {@link InventorySnapshot#page keyset page} from the cursor, so a listing is never sorted as a whole and a miss
+ * keeps at most two pages of rows while scanning. Entries are keyed by the {@link InventorySnapshot#epoch() snapshot epoch} they were computed
+ * from, and the first lookup with a newer epoch drops them all, so a committed sync invalidates every listing.
+ * Entries also expire after {@link ListingConfig#getCacheTtl()}, and the least recently used is evicted once the
+ * cache holds {@link ListingConfig#getCacheMaxEntries()}.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ListingCache {
+    private final ListingConfig listingConfig;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<Key, Listing> listings = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Listing> eldest) {
+            return size() > listingConfig.getCacheMaxEntries();
+        }
+    };
+    private long epoch;
+
+    @PostConstruct
+    public void registerMetrics() {
+        Gauge.builder("apartments.listing.cache.size", this, ListingCache::size)
+                .description("Cached apartment listings")
+                .register(meterRegistry);
+    }
+
+    public Slice get(long chatId, long filterId, UnitSort sort, long epoch, int page, int pageSize, Loader loader) {
+        return get(new Key(chatId, filterId, sort, epoch), page, pageSize, loader, Instant.now());
+    }
+
+    /**
+     * The loader runs outside the lock, so one chat's filtering never holds up another chat's page.
+     */
+    Slice get(Key key, int page, int pageSize, Loader loader, Instant now) {
+        int wanted = (page + 1) * pageSize;
+        Listing listing = lookup(key, now);
+        if (listing != null && listing.covers(wanted)) {
+            meterRegistry.counter("apartments.listing.cache", "result", "hit").increment();
+        } else {
+            meterRegistry.counter("apartments.listing.cache", "result", "miss").increment();
+            List<String> known = listing != null ? listing.objectIds() : List.of();
+            // One page ahead, so "Next" from the requested page is a hit
+            InventorySnapshot.Page loaded = loader.load(listing != null ? listing.next() : null, wanted + pageSize - known.size());
+            List<String> objectIds = new ArrayList<>(known.size() + loaded.units().size());
+            objectIds.addAll(known);
+            loaded.units().forEach(unit -> objectIds.add(unit.objectId()));
+            listing = new Listing(List.copyOf(objectIds), loaded.total(), loaded.next(), now.plus(listingConfig.getCacheTtl()));
+            store(key, listing);
+        }
+        return listing.slice(page, pageSize);
+    }
+
+    private synchronized Listing lookup(Key key, Instant now) {
+        if (key.epoch() > epoch) {
+            if (!listings.isEmpty())
+                log.debug("Inventory snapshot moved to epoch {}, dropping {} cached listings", key.epoch(), listings.size());
+            listings.clear();
+            epoch = key.epoch();
+        }
+        Listing listing = listings.get(key);
+        if (listing == null)
+            return null;
+        if (!listing.expiresAt().isAfter(now)) {
+            listings.remove(key);
+            return null;
+        }
+        return listing;
+    }
+
+    private synchronized void store(Key key, Listing listing) {
+        // A listing computed from an older snapshot must not outlive the switch to a newer one
+        if (key.epoch() == epoch)
+            listings.put(key, listing);
+    }
+
+    /**
+     * Drops the listings of a filter that was changed or deleted, once the change commits.
+     */
+    public void evictFilter(long filterId) {
+        AfterCommit.run(() -> {
+            synchronized (this) {
+                listings.keySet().removeIf(key -> key.filterId() == filterId);
+            }
+        });
+    }
+
+    public synchronized int size() {
+        return listings.size();
+    }
+
+    record Key(long chatId, long filterId, UnitSort sort, long epoch) {
+    }
+
+    /**
+     * Loads one keyset page of the listing.
+     */
+    @FunctionalInterface
+    public interface Loader {
+        InventorySnapshot.Page load(InventorySnapshot.Cursor after, int limit);
+    }
+
+    /**
+     * @param number the page actually shown, the last one if the requested page is past the end
+     * @param total  every matching unit
+     */
+    public record Slice(List<String> objectIds, int number, int total) {
+    }
+
+    /**
+     * @param next cursor after the last known id, {@code null} once every match is known
+     */
+    private record Listing(List<String> objectIds, int total, InventorySnapshot.Cursor next, Instant expiresAt) {
+
+        boolean covers(int count) {
+            return next == null || objectIds.size() >= count;
+        }
+
+        Slice slice(int page, int pageSize) {
+            if (objectIds.isEmpty())
+                return new Slice(List.of(), 0, total);
+            int number = Math.min(page, (objectIds.size() - 1) / pageSize);
+            return new Slice(objectIds.subList(number * pageSize, Math.min(objectIds.size(), (number + 1) * pageSize)), number, total);
+        }
+    }
+}
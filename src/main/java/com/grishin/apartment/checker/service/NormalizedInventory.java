@@ -0,0 +1,77 @@
+package com.grishin.apartment.checker.service;
+
+import com.grishin.apartment.checker.dto.AptDTO;
+import com.grishin.apartment.checker.dto.FloorPlanGroupDTO;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * One canonical record per unit {@code objectID} plus the group types it appeared in. The upstream repeats
+ * a unit in every floor-plan group it belongs to; collapsing them here lets persistence resolve each unit once.
+ */
+public class NormalizedInventory implements ApartmentsFetcherClient.UnitConsumer {
+    private final Map<String, AptDTO> units = new LinkedHashMap<>();
+    private final Map<String, Set<String>> groupTypesByUnit = new HashMap<>();
+    private final Set<String> groupTypes = new LinkedHashSet<>();
+    private int duplicates;
+
+    public static NormalizedInventory of(List<FloorPlanGroupDTO> groups) {
+        NormalizedInventory inventory = new NormalizedInventory();
+        for (FloorPlanGroupDTO group : groups) {
+            for (AptDTO unit : group.getUnits()) {
+                inventory.accept(group.getGroupType(), unit);
+            }
+        }
+        return inventory;
+    }
+
+    /**
+     * A batch of already collapsed units, each with every group type it was listed in.
+     */
+    static NormalizedInventory of(Collection<AptDTO> units, Function<String, Set<String>> groupTypes) {
+        NormalizedInventory inventory = new NormalizedInventory();
+        for (AptDTO unit : units) {
+            inventory.units.put(unit.getObjectID(), unit);
+            Set<String> unitGroupTypes = groupTypes.apply(unit.getObjectID());
+            inventory.groupTypes.addAll(unitGroupTypes);
+            inventory.groupTypesByUnit.put(unit.getObjectID(), new LinkedHashSet<>(unitGroupTypes));
+        }
+        return inventory;
+    }
+
+    @Override
+    public void accept(String groupType, AptDTO unit) {
+        if (units.putIfAbsent(unit.getObjectID(), unit) != null)
+            duplicates++;
+        groupTypes.add(groupType);
+        groupTypesByUnit.computeIfAbsent(unit.getObjectID(), id -> new LinkedHashSet<>()).add(groupType);
+    }
+
+    public Collection<AptDTO> getUnits() {
+        return units.values();
+    }
+
+    public AptDTO getUnit(String objectId) {
+        return units.get(objectId);
+    }
+
+    public Set<String> getUnitIds() {
+        return units.keySet();
+    }
+
+    public Set<String> getGroupTypes() {
+        return groupTypes;
+    }
+
+    public Set<String> getGroupTypes(String objectId) {
+        return groupTypesByUnit.getOrDefault(objectId, Set.of());
+    }
+
+    /**
+     * Number of repeated unit occurrences that were collapsed into an existing record.
+     */
+    public int getDuplicates() {
+        return duplicates;
+    }
+}
@@ -0,0 +1,63 @@
+package com.grishin.apartment.checker.service;
+
+import java.util.BitSet;
+
+/**
+ * Subscription ranges over one numeric field, bucketed on a fixed grid. A bucket holds the slot of every
+ * subscription whose range overlaps it, and values outside the grid fall into the first or last bucket, so
+ * a lookup may return extra candidates but never misses one.
+ */
+final class RangeBitmap {
+    private final long origin;
+    private final long width;
+    private final BitSet[] buckets;
+    private final BitSet unbounded = new BitSet();
+
+    RangeBitmap(long origin, long width, int bucketCount) {
+        this.origin = origin;
+        this.width = width;
+        this.buckets = new BitSet[bucketCount];
+        for (int i = 0; i < bucketCount; i++)
+            buckets[i] = new BitSet();
+    }
+
+    /**
+     * @param min inclusive lower bound, open when null
+     * @param max inclusive upper bound, open when null
+     */
+    void add(int slot, Long min, Long max) {
+        if (min == null && max == null) {
+            unbounded.set(slot);
+            return;
+        }
+        int from = min != null ? bucketOf(min) : 0;
+        int to = max != null ? bucketOf(max) : buckets.length - 1;
+        for (int bucket = from; bucket <= to; bucket++)
+            buckets[bucket].set(slot);
+    }
+
+    void remove(int slot) {
+        unbounded.clear(slot);
+        for (BitSet bucket : buckets)
+            bucket.clear(slot);
+    }
+
+    /**
+     * Keeps only candidates whose range may contain the value. A missing value only passes subscriptions without
+     * a bound on the field, like a null column in SQL.
+     */
+    void retain(BitSet candidates, Long value) {
+        if (value == null) {
+            candidates.and(unbounded);
+            return;
+        }
+        BitSet accepted = (BitSet) buckets[bucketOf(value)].clone();
+        accepted.or(unbounded);
+        candidates.and(accepted);
+    }
+
+    private int bucketOf(long value) {
+        long bucket = Math.floorDiv(value - origin, width);
+        return (int) Math.max(0, Math.min(buckets.length - 1, bucket));
+    }
+}
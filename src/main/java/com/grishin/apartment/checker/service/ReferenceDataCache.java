@@ -0,0 +1,189 @@
+package com.grishin.apartment.checker.service;
+
+import com.grishin.apartment.checker.config.SyncConfig;
+import com.grishin.apartment.checker.storage.CommunityRepository;
+import com.grishin.apartment.checker.storage.FloorPlanGroupRepository;
+import com.grishin.apartment.checker.storage.FloorPlanRepository;
+import com.grishin.apartment.checker.storage.entity.Community;
+import com.grishin.apartment.checker.storage.entity.FloorPlan;
+import com.grishin.apartment.checker.storage.entity.FloorPlanGroup;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Keys of the communities, floor plans and floor plan groups known to be stored, so sync can link units to them
+ * through {@link EntityManager#getReference references} instead of loading them every chunk. Only the keys are
+ * cached, never entity state, so a reference is always read from the current persistence context.
+ * <p>
+ * Each kind is a bounded LRU of {@link SyncConfig#getReferenceCacheSize()} entries. Rows are added once the
+ * transaction that found or created them commits, so a rollback never leaves a key for a missing row. Anything
+ * that deletes reference rows outside of sync has to call {@link #evictAll()}.
+ * <p>
+ * Lookups are counted per kind as {@code apartments.reference.cache} hits and misses, with the hit ratio as a gauge.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ReferenceDataCache {
+    static final String COMMUNITY = "community";
+    static final String FLOOR_PLAN = "floorPlan";
+    static final String GROUP = "group";
+    static final String AMENITY = "amenity";
+
+    private final CommunityRepository communityRepository;
+    private final FloorPlanRepository floorPlanRepository;
+    private final FloorPlanGroupRepository floorPlanGroupRepository;
+    private final EntityManager entityManager;
+    private final SyncConfig syncConfig;
+    private final MeterRegistry meterRegistry;
+
+    private final Region<String> communities = new Region<>();
+    private final Region<String> floorPlans = new Region<>();
+    /**
+     * Group ids by their natural key, the group type.
+     */
+    private final Region<Long> groups = new Region<>();
+
+    @PostConstruct
+    public void registerMetrics() {
+        for (String kind : List.of(COMMUNITY, FLOOR_PLAN, GROUP, AMENITY)) {
+            Counter hits = lookups(kind, "hit");
+            Counter misses = lookups(kind, "miss");
+            Gauge.builder("apartments.reference.cache.hit.ratio", () -> {
+                        double total = hits.count() + misses.count();
+                        return total > 0 ? hits.count() / total : 0;
+                    })
+                    .tag("kind", kind)
+                    .description("Share of reference lookups answered without a query")
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * @return stored communities by id, references for the cached ones and loaded entities for the rest
+     */
+    public Map<String, Community> communities(Collection<String> ids) {
+        return resolve(COMMUNITY, communities, ids, id -> entityManager.getReference(Community.class, id),
+                communityRepository::findAllById, Community::getId);
+    }
+
+    /**
+     * @return stored floor plans by unique id, references for the cached ones and loaded entities for the rest
+     */
+    public Map<String, FloorPlan> floorPlans(Collection<String> ids) {
+        return resolve(FLOOR_PLAN, floorPlans, ids, id -> entityManager.getReference(FloorPlan.class, id),
+                floorPlanRepository::findAllById, FloorPlan::getFloorPlanUniqueId);
+    }
+
+    /**
+     * @return stored groups by group type, references for the cached ones and loaded entities for the rest
+     */
+    public Map<String, FloorPlanGroup> groups(Collection<String> groupTypes) {
+        Map<String, FloorPlanGroup> resolved = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String groupType : groupTypes) {
+            Long groupId = groups.get(groupType);
+            if (groupId != null)
+                resolved.put(groupType, entityManager.getReference(FloorPlanGroup.class, groupId));
+            else
+                missing.add(groupType);
+        }
+        record(GROUP, resolved.size(), missing.size());
+        if (!missing.isEmpty()) {
+            for (FloorPlanGroup group : floorPlanGroupRepository.findByGroupTypeIn(missing)) {
+                resolved.put(group.getGroupType(), group);
+                registerGroup(group);
+            }
+        }
+        return resolved;
+    }
+
+    public void registerCommunity(Community community) {
+        String id = community.getId();
+        AfterCommit.run(() -> communities.put(id, id));
+    }
+
+    public void registerFloorPlan(FloorPlan floorPlan) {
+        String id = floorPlan.getFloorPlanUniqueId();
+        AfterCommit.run(() -> floorPlans.put(id, id));
+    }
+
+    public void registerGroup(FloorPlanGroup group) {
+        String groupType = group.getGroupType();
+        Long groupId = group.getGroupId();
+        AfterCommit.run(() -> groups.put(groupType, groupId));
+    }
+
+    /**
+     * Counts lookups answered by another in-memory reference cache, such as the {@link AmenityDictionary}.
+     */
+    void record(String kind, int hits, int misses) {
+        lookups(kind, "hit").increment(hits);
+        lookups(kind, "miss").increment(misses);
+    }
+
+    public void evictAll() {
+        communities.clear();
+        floorPlans.clear();
+        groups.clear();
+        log.debug("Reference data cache cleared");
+    }
+
+    private <T> Map<String, T> resolve(String kind, Region<String> region, Collection<String> ids, Function<String, T> reference,
+                                       Function<List<String>, List<T>> load, Function<T, String> key) {
+        Map<String, T> resolved = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String id : ids) {
+            if (region.get(id) != null)
+                resolved.put(id, reference.apply(id));
+            else
+                missing.add(id);
+        }
+        record(kind, resolved.size(), missing.size());
+        if (!missing.isEmpty()) {
+            for (T entity : load.apply(missing)) {
+                String id = key.apply(entity);
+                resolved.put(id, entity);
+                AfterCommit.run(() -> region.put(id, id));
+            }
+        }
+        return resolved;
+    }
+
+    private Counter lookups(String kind, String result) {
+        return meterRegistry.counter("apartments.reference.cache", "kind", kind, "result", result);
+    }
+
+    /**
+     * Bounded LRU map of one kind of key.
+     */
+    private final class Region<V> {
+        private final Map<String, V> entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+                return size() > syncConfig.getReferenceCacheSize();
+            }
+        };
+
+        synchronized V get(String key) {
+            return entries.get(key);
+        }
+
+        synchronized void put(String key, V value) {
+            entries.put(key, value);
+        }
+
+        synchronized void clear() {
+            entries.clear();
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package com.grishin.apartment.checker.service;
+
+import com.grishin.apartment.checker.config.FetchConfig;
+import com.grishin.apartment.checker.config.HttpClientConfig;
+import com.grishin.apartment.checker.config.ResilienceConfig;
+import com.grishin.apartment.checker.dto.FloorPlanGroupDTO;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Wraps {@link IrvineCompanyClient} with bounded exponential-backoff retries, a circuit breaker per community
+ * and, when {@code apartments.resilience.hedging} is on, a second request once the first one is slower than
+ * the p95 of the community's recent fetches. No retry is started that would end past
+ * {@code apartments.fetch.timeout}, or {@code apartments.fetch.streamTimeout} for a streamed fetch, so retries
+ * never outlast the caller waiting for them.
+ */
+@Slf4j
+@Primary
+@Service
+public class ResilientApartmentsFetcherClient implements ApartmentsFetcherClient {
+    private final ApartmentsFetcherClient delegate;
+    private final ResilienceConfig config;
+    private final MeterRegistry meterRegistry;
+
+    private final HttpClientConfig httpClientConfig;
+    private final FetchConfig fetchConfig;
+
+    private final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+    /**
+     * Per community, so one slow community doesn't make every other one hedge.
+     */
+    private final Map<String, LatencyWindow> latencies = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public ResilientApartmentsFetcherClient(IrvineCompanyClient delegate, ResilienceConfig config, HttpClientConfig httpClientConfig,
+                                            FetchConfig fetchConfig, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.config = config;
+        this.httpClientConfig = httpClientConfig;
+        this.fetchConfig = fetchConfig;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public List<FloorPlanGroupDTO> fetchApartments(String communityId, int unitsPerFloor) {
+        long deadline = System.nanoTime() + fetchConfig.getTimeout().toNanos();
+        return guarded(communityId, () -> withRetries(communityId,
+                () -> hedged(communityId, () -> delegate.fetchApartments(communityId, unitsPerFloor)),
+                () -> true, deadline));
+    }
+
+    @Override
+    public void streamApartments(String communityId, int unitsPerFloor, UnitConsumer consumer) {
+        // Units already handed to the consumer can't be taken back, so only retry while nothing was emitted
+        AtomicBoolean emitted = new AtomicBoolean();
+        long deadline = System.nanoTime() + fetchConfig.getStreamTimeout().toNanos();
+        guarded(communityId, () -> withRetries(communityId, () -> {
+            delegate.streamApartments(communityId, unitsPerFloor, (groupType, unit) -> {
+                // A stalled read is cut by the read timeout, a slow but steady stream only here
+                if (System.nanoTime() - deadline > 0)
+                    throw new ResourceAccessException("Streaming community " + communityId + " took longer than " + fetchConfig.getStreamTimeout());
+                emitted.set(true);
+                consumer.accept(groupType, unit);
+            });
+            return null;
+        }, () -> !emitted.get(), deadline));
+    }
+
+    private <T> T guarded(String communityId, Supplier<T> call) {
+        CircuitBreaker breaker = breakers.computeIfAbsent(communityId, this::createBreaker);
+        if (!breaker.tryAcquire(Instant.now())) {
+            meterRegistry.counter("apartments.fetch.circuit.rejected", "community", communityId).increment();
+            throw new CircuitOpenException(communityId);
+        }
+        try {
+            T result = call.get();
+            breaker.onSuccess();
+            return result;
+        } catch (RestClientException e) {
+            if (isRejected(e)) {
+                breaker.onIgnored();
+                throw e;
+            }
+            if (breaker.onFailure(Instant.now()))
+                log.warn("Circuit breaker opened for community {} after {} failures", communityId, config.getFailureThreshold());
+            throw e;
+        } catch (RuntimeException e) {
+            breaker.onIgnored();
+            throw e;
+        }
+    }
+
+    /**
+     * @param deadline {@link System#nanoTime()} by which the last retry's backoff must have ended
+     */
+    private <T> T withRetries(String communityId, Supplier<T> call, BooleanSupplier canRetry, long deadline) {
+        Duration backoff = config.getInitialBackoff();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return call.get();
+            } catch (RuntimeException e) {
+                if (attempt >= config.getMaxAttempts() || !isTransient(e) || !canRetry.getAsBoolean())
+                    throw e;
+                Duration sleep = Duration.ofMillis((long) (backoff.toMillis() * ThreadLocalRandom.current().nextDouble(0.5, 1.0)));
+                if (System.nanoTime() + sleep.toNanos() - deadline >= 0) {
+                    log.warn("Fetch attempt {} for community {} failed: {}. No time left to retry", attempt, communityId, e.getMessage());
+                    throw e;
+                }
+                meterRegistry.counter("apartments.fetch.retries", "community", communityId).increment();
+                log.warn("Fetch attempt {} for community {} failed: {}. Retrying in {}", attempt, communityId, e.getMessage(), sleep);
+                sleep(sleep);
+                backoff = backoff.multipliedBy(2).compareTo(config.getMaxBackoff()) > 0 ? config.getMaxBackoff() : backoff.multipliedBy(2);
+            }
+        }
+    }
+
+    /**
+     * Sends a second request once the first is slower than the community's p95 and returns whichever succeeds
+     * first. The other one is cancelled, and only the winner's latency is recorded. Both together are bounded by
+     * the read timeout.
+     */
+    private <T> T hedged(String communityId, Supplier<T> call) {
+        LatencyWindow window = latencies.computeIfAbsent(communityId, id -> new LatencyWindow(config.getLatencyWindow()));
+        Duration hedgeAfter = config.isHedging() ? window.p95(config.getHedgingMinSamples()) : null;
+        if (hedgeAfter == null)
+            return recorded(window, timed(call));
+
+        CompletionService<Timed<T>> race = new ExecutorCompletionService<>(executor);
+        List<Future<Timed<T>>> requests = new ArrayList<>(2);
+        try {
+            requests.add(race.submit(() -> timed(call)));
+            Future<Timed<T>> done = race.poll(Math.max(1, hedgeAfter.toMillis()), TimeUnit.MILLISECONDS);
+            if (done == null) {
+                log.info("Fetch for community {} is slower than p95 {}, sending a hedged request", communityId, hedgeAfter);
+                meterRegistry.counter("apartments.fetch.hedged", "community", communityId).increment();
+                requests.add(race.submit(() -> timed(call)));
+            }
+            long deadline = System.nanoTime() + httpClientConfig.getReadTimeout().toNanos();
+            RuntimeException failure = null;
+            for (int completed = 0; completed < requests.size(); completed++) {
+                if (done == null)
+                    done = race.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (done == null)
+                    throw new ResourceAccessException("Fetch for community " + communityId + " took longer than " + httpClientConfig.getReadTimeout());
+                try {
+                    return recorded(window, done.get());
+                } catch (ExecutionException e) {
+                    failure = unwrap(e.getCause());
+                }
+                done = null;
+            }
+            throw failure;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResourceAccessException("Interrupted while fetching community " + communityId);
+        } finally {
+            // Interrupts a request still downloading, so the loser doesn't keep reading the whole payload
+            requests.forEach(request -> request.cancel(true));
+        }
+    }
+
+    private static <T> Timed<T> timed(Supplier<T> call) {
+        long start = System.nanoTime();
+        T result = call.get();
+        return new Timed<>(result, Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    private static <T> T recorded(LatencyWindow window, Timed<T> timed) {
+        window.record(timed.latency());
+        return timed.result();
+    }
+
+    private static boolean isTransient(RuntimeException e) {
+        return e instanceof ResourceAccessException
+                || e instanceof HttpServerErrorException
+                || e instanceof HttpClientErrorException.TooManyRequests;
+    }
+
+    /**
+     * A 4xx other than 429 means the request itself is wrong, which says nothing about the community's health.
+     */
+    private static boolean isRejected(RestClientException e) {
+        return e instanceof HttpClientErrorException && !(e instanceof HttpClientErrorException.TooManyRequests);
+    }
+
+    private static RuntimeException unwrap(Throwable error) {
+        return error instanceof RuntimeException runtime ? runtime : new ResourceAccessException(error.getMessage());
+    }
+
+    private static void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResourceAccessException("Interrupted during retry backoff");
+        }
+    }
+
+    private CircuitBreaker createBreaker(String communityId) {
+        CircuitBreaker breaker = new CircuitBreaker(config.getFailureThreshold(), config.getOpenDuration());
+        Gauge.builder("apartments.fetch.circuit.state", breaker, b -> b.getState().ordinal())
+                .description("0 - closed, 1 - half open, 2 - open")
+                .tag("community", communityId)
+                .register(meterRegistry);
+        return breaker;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private record Timed<T>(T result, Duration latency) {
+    }
+
+    enum State {
+        CLOSED, HALF_OPEN, OPEN
+    }
+
+    static class CircuitBreaker {
+        private final int failureThreshold;
+        private final Duration openDuration;
+
+        private State state = State.CLOSED;
+        private int consecutiveFailures;
+        private Instant openedAt;
+        private boolean trialInFlight;
+
+        CircuitBreaker(int failureThreshold, Duration openDuration) {
+            this.failureThreshold = failureThreshold;
+            this.openDuration = openDuration;
+        }
+
+        synchronized State getState() {
+            return state;
+        }
+
+        synchronized boolean tryAcquire(Instant now) {
+            if (state == State.OPEN) {
+                if (now.isBefore(openedAt.plus(openDuration)))
+                    return false;
+                state = State.HALF_OPEN;
+            }
+            if (state == State.HALF_OPEN) {
+                if (trialInFlight)
+                    return false;
+                trialInFlight = true;
+            }
+            return true;
+        }
+
+        synchronized void onSuccess() {
+            state = State.CLOSED;
+            consecutiveFailures = 0;
+            trialInFlight = false;
+        }
+
+        /**
+         * @return true if this failure opened the circuit
+         */
+        synchronized boolean onFailure(Instant now) {
+            consecutiveFailures++;
+            trialInFlight = false;
+            if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+                boolean opened = state != State.OPEN;
+                state = State.OPEN;
+                openedAt = now;
+                return opened;
+            }
+            return false;
+        }
+
+        synchronized void onIgnored() {
+            trialInFlight = false;
+        }
+    }
+
+    static class LatencyWindow {
+        private final long[] samples;
+        private int next;
+        private int size;
+
+        LatencyWindow(int capacity) {
+            this.samples = new long[Math.max(1, capacity)];
+        }
+
+        synchronized void record(Duration latency) {
+            samples[next] = latency.toMillis();
+            next = (next + 1) % samples.length;
+            size = Math.min(size + 1, samples.length);
+        }
+
+        synchronized Duration p95(int minSamples) {
+            if (size < Math.max(1, minSamples))
+                return null;
+            long[] sorted = Arrays.copyOf(samples, size);
+            Arrays.sort(sorted);
+            return Duration.ofMillis(sorted[(int) Math.ceil(size * 0.95) - 1]);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.grishin.apartment.checker.service;
+
+import com.grishin.apartment.checker.dto.AptDTO;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Collapses a streamed listing by {@code objectID} as units arrive and hands new units on in batches, so at most
+ * a batch of unit records is held at a time. Only the objectIDs and group types of the units seen are kept for the
+ * whole listing.
+ * <p>
+ * A unit listed again after its batch was handed on may turn out to be in more groups. Such units, and the ones a
+ * batch couldn't settle before their groups were final, are kept and returned by {@link #finish()} with every
+ * group they were listed in.
+ */
+class StreamedInventory implements ApartmentsFetcherClient.UnitConsumer {
+    private final int batchSize;
+    private final Function<NormalizedInventory, Collection<String>> sync;
+
+    private final Map<String, Set<String>> groupTypesByUnit = new HashMap<>();
+    private final Map<String, AptDTO> pending = new LinkedHashMap<>();
+    private final Map<String, AptDTO> unsettled = new LinkedHashMap<>();
+    private int duplicates;
+
+    /**
+     * @param sync syncs a batch whose units may still gain groups, and returns the objectIDs it left unsettled
+     */
+    StreamedInventory(int batchSize, Function<NormalizedInventory, Collection<String>> sync) {
+        this.batchSize = Math.max(1, batchSize);
+        this.sync = sync;
+    }
+
+    @Override
+    public void accept(String groupType, AptDTO unit) {
+        String objectId = unit.getObjectID();
+        Set<String> groupTypes = groupTypesByUnit.get(objectId);
+        if (groupTypes == null) {
+            groupTypes = new LinkedHashSet<>();
+            groupTypes.add(groupType);
+            groupTypesByUnit.put(objectId, groupTypes);
+            pending.put(objectId, unit);
+            if (pending.size() >= batchSize)
+                flush();
+            return;
+        }
+        duplicates++;
+        if (groupTypes.add(groupType) && !pending.containsKey(objectId))
+            unsettled.putIfAbsent(objectId, unit);
+    }
+
+    private void flush() {
+        NormalizedInventory batch = NormalizedInventory.of(pending.values(), groupTypesByUnit::get);
+        pending.clear();
+        for (String objectId : sync.apply(batch))
+            unsettled.putIfAbsent(objectId, batch.getUnit(objectId));
+    }
+
+    /**
+     * @return the units not handed on yet and the unsettled ones, with their final groups
+     */
+    NormalizedInventory finish() {
+        Map<String, AptDTO> rest = new LinkedHashMap<>(unsettled);
+        rest.putAll(pending);
+        pending.clear();
+        unsettled.clear();
+        return NormalizedInventory.of(rest.values(), groupTypesByUnit::get);
+    }
+
+    Set<String> getUnitIds() {
+        return groupTypesByUnit.keySet();
+    }
+
+    /**
+     * Number of repeated unit occurrences that were collapsed into an already seen unit.
+     */
+    int getDuplicates() {
+        return duplicates;
+    }
+}
@@ -0,0 +1,208 @@
+package com.grishin.apartment.checker.service;
+
+import com.grishin.apartment.checker.dto.AmenityMask;
+import com.grishin.apartment.checker.dto.ApartmentFilter;
+import com.grishin.apartment.checker.dto.CanonicalFilter;
+import com.grishin.apartment.checker.dto.MatchableUnit;
+import com.grishin.apartment.checker.storage.UserFilterPreferenceRepository;
+import com.grishin.apartment.checker.storage.entity.UserFilterPreference;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Every stored subscription, partitioned by community and indexed per filter field, so a new unit is only
+ * checked against the subscriptions that may match it. Loaded once at startup and kept in step by
+ * {@link UserFilterService} as filters are saved and cleared.
+ * <p>
+ * Subscriptions are indexed by their {@link CanonicalFilter}, so identical filters take one slot and are evaluated
+ * once for all their subscribers.
+ * <p>
+ * Subscriptions without a selected community are not indexed, notifications are sent per community.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SubscriptionIndex {
+    private final UserFilterPreferenceRepository userFilterRepository;
+    private final AmenityDictionary amenityDictionary;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, SubscriptionPartition> partitions = new HashMap<>();
+    private final Map<Long, Subscription> subscriptionsById = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    @PostConstruct
+    public void load() {
+        Gauge.builder("apartments.subscriptions", this, SubscriptionIndex::size)
+                .description("Indexed subscriptions")
+                .register(meterRegistry);
+        Gauge.builder("apartments.subscriptions.distinct", this, SubscriptionIndex::distinctFilters)
+                .description("Distinct canonical filters among the indexed subscriptions")
+                .register(meterRegistry);
+        List<Subscription> subscriptions = userFilterRepository.findAllWithAmenities().stream()
+                .map(Subscription::of)
+                .toList();
+        lock.writeLock().lock();
+        try {
+            partitions.clear();
+            subscriptionsById.clear();
+            subscriptions.forEach(this::add);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Indexed {} subscriptions with {} distinct filters in {} communities", size(), distinctFilters(), partitions.size());
+    }
+
+    /**
+     * Adds or replaces a saved subscription once its transaction commits. The preference is copied right away,
+     * so it must have its amenities loaded.
+     */
+    public void put(UserFilterPreference preference) {
+        Subscription subscription = Subscription.of(preference);
+        AfterCommit.run(() -> {
+            lock.writeLock().lock();
+            try {
+                remove(subscription.id());
+                add(subscription);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            log.debug("Subscription {} indexed for community {}", subscription.id(), subscription.filter().communityId());
+        });
+    }
+
+    /**
+     * Drops deleted subscriptions once their transaction commits.
+     */
+    public void removeAll(Collection<Long> subscriptionIds) {
+        if (subscriptionIds.isEmpty())
+            return;
+        List<Long> ids = List.copyOf(subscriptionIds);
+        AfterCommit.run(() -> {
+            lock.writeLock().lock();
+            try {
+                ids.forEach(this::remove);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            log.debug("Subscriptions {} removed from index", ids);
+        });
+    }
+
+    /**
+     * @return filters in the unit's community that may match it. Every filter that matches is included, but the
+     * caller still has to test each candidate's predicate.
+     */
+    public List<SharedFilter> candidates(MatchableUnit unit) {
+        lock.readLock().lock();
+        try {
+            SubscriptionPartition partition = partitions.get(unit.communityId());
+            return partition != null ? partition.candidates(unit) : List.of();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean hasSubscriptions(String communityId) {
+        lock.readLock().lock();
+        try {
+            return partitions.containsKey(communityId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return subscriptions per community, communities without any are left out
+     */
+    public Map<String, Integer> subscriberCounts() {
+        lock.readLock().lock();
+        try {
+            Map<String, Integer> counts = HashMap.newHashMap(partitions.size());
+            subscriptionsById.values().forEach(subscription -> counts.merge(subscription.filter().communityId(), 1, Integer::sum));
+            return counts;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return subscriptionsById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int distinctFilters() {
+        lock.readLock().lock();
+        try {
+            return partitions.values().stream().mapToInt(SubscriptionPartition::size).sum();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void add(Subscription subscription) {
+        String communityId = subscription.filter().communityId();
+        if (communityId == null)
+            return;
+        AmenityMask amenities = amenityDictionary.encode(subscription.filter().amenities());
+        partitions.computeIfAbsent(communityId, id -> new SubscriptionPartition()).add(subscription, amenities);
+        subscriptionsById.put(subscription.id(), subscription);
+    }
+
+    private void remove(Long subscriptionId) {
+        Subscription subscription = subscriptionsById.remove(subscriptionId);
+        if (subscription == null)
+            return;
+        String communityId = subscription.filter().communityId();
+        SubscriptionPartition partition = partitions.get(communityId);
+        partition.remove(subscription);
+        if (partition.isEmpty())
+            partitions.remove(communityId);
+    }
+
+    /**
+     * Detached copy of a subscription.
+     */
+    public record Subscription(Long id, Long userId, CanonicalFilter filter) {
+
+        public static Subscription of(UserFilterPreference preference) {
+            return new Subscription(preference.getId(), preference.getUserId(), CanonicalFilter.of(ApartmentFilter.createFrom(preference)));
+        }
+    }
+
+    /**
+     * A distinct filter compiled once, with every subscription that uses it. Immutable, a change of subscribers
+     * replaces it in the index.
+     */
+    public record SharedFilter(CanonicalFilter filter, Predicate<MatchableUnit> predicate, List<Subscription> subscribers) {
+
+        static SharedFilter of(Subscription subscription, AmenityMask amenities) {
+            return new SharedFilter(subscription.filter(), ApartmentPredicates.filterBy(subscription.filter().toFilter(), amenities),
+                    List.of(subscription));
+        }
+
+        SharedFilter with(Subscription subscription) {
+            return new SharedFilter(filter, predicate, Stream.concat(subscribers.stream(), Stream.of(subscription)).toList());
+        }
+
+        SharedFilter without(Long subscriptionId) {
+            return new SharedFilter(filter, predicate, subscribers.stream()
+                    .filter(subscription -> !Objects.equals(subscription.id(), subscriptionId))
+                    .toList());
+        }
+    }
+}
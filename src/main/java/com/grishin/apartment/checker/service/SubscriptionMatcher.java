@@ -0,0 +1,67 @@
+package com.grishin.apartment.checker.service;
+
+import com.grishin.apartment.checker.dto.CanonicalFilter;
+import com.grishin.apartment.checker.dto.MatchableUnit;
+import com.grishin.apartment.checker.dto.UnitMessage;
+import com.grishin.apartment.checker.service.SubscriptionIndex.SharedFilter;
+import com.grishin.apartment.checker.service.SubscriptionIndex.Subscription;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+/**
+ * Matches units loaded once against subscriptions in memory instead of running a query per subscriber. Each unit
+ * is only tested against the candidates the {@link SubscriptionIndex} returns for it, and each distinct filter is
+ * tested once, its result fanned out to every subscription sharing it.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SubscriptionMatcher {
+    private final SubscriptionIndex subscriptionIndex;
+    private final MeterRegistry meterRegistry;
+
+    public boolean hasSubscriptions(String communityId) {
+        return subscriptionIndex.hasSubscriptions(communityId);
+    }
+
+    /**
+     * @return one entry per subscription with at least one matching unit, in subscription order
+     */
+    public List<Match> match(List<MatchableUnit> units) {
+        Map<CanonicalFilter, SharedFilter> filters = new HashMap<>();
+        Map<CanonicalFilter, List<UnitMessage>> matched = new HashMap<>();
+        long evaluations = 0;
+        long shared = 0;
+        for (MatchableUnit unit : units) {
+            for (SharedFilter candidate : subscriptionIndex.candidates(unit)) {
+                evaluations++;
+                shared += candidate.subscribers().size() - 1;
+                if (candidate.predicate().test(unit)) {
+                    filters.putIfAbsent(candidate.filter(), candidate);
+                    matched.computeIfAbsent(candidate.filter(), f -> new ArrayList<>()).add(unit.message());
+                }
+            }
+        }
+
+        List<Match> matches = new ArrayList<>();
+        matched.forEach((filter, messages) -> {
+            List<UnitMessage> matchedUnits = List.copyOf(messages);
+            for (Subscription subscription : filters.get(filter).subscribers())
+                matches.add(new Match(subscription, matchedUnits));
+        });
+        matches.sort(Comparator.comparing((Match match) -> match.subscription().id(), Comparator.nullsFirst(Comparator.naturalOrder())));
+
+        meterRegistry.counter("apartments.subscriptions.evaluations").increment(evaluations);
+        meterRegistry.counter("apartments.subscriptions.evaluations.shared").increment(shared);
+        log.debug("{} units matched {} subscriptions through {} filters, {} evaluations, {} saved by sharing",
+                units.size(), matches.size(), matched.size(), evaluations, shared);
+        return matches;
+    }
+
+    public record Match(Subscription subscription, List<UnitMessage> units) {
+    }
+}
@@ -0,0 +1,134 @@
+package com.grishin.apartment.checker.service;
+
+import com.grishin.apartment.checker.dto.AmenityMask;
+import com.grishin.apartment.checker.dto.CanonicalFilter;
+import com.grishin.apartment.checker.dto.MatchableUnit;
+import com.grishin.apartment.checker.service.SubscriptionIndex.SharedFilter;
+import com.grishin.apartment.checker.service.SubscriptionIndex.Subscription;
+
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Distinct filters of one community as bitmaps over slot numbers, one structure per filter field. Subscriptions
+ * with the same canonical filter share a slot. Narrowing the candidates for a unit is a few word-wide AND
+ * operations per field, independent of how many filters reject it. Not thread safe, {@link SubscriptionIndex}
+ * guards it.
+ */
+final class SubscriptionPartition {
+    private static final long DATE_GRID_ORIGIN = LocalDate.of(2024, 1, 1).toEpochDay();
+
+    private final List<SharedFilter> slots = new ArrayList<>();
+    private final Deque<Integer> freeSlots = new ArrayDeque<>();
+    private final Map<CanonicalFilter, Integer> slotsByFilter = new HashMap<>();
+    private final BitSet live = new BitSet();
+
+    private final RangeBitmap studio = new RangeBitmap(0, 1, 2);
+    private final RangeBitmap bedrooms = new RangeBitmap(0, 1, 8);
+    private final RangeBitmap bathrooms = new RangeBitmap(0, 1, 8);
+    private final RangeBitmap price = new RangeBitmap(0, 100, 100);
+    private final RangeBitmap floor = new RangeBitmap(0, 1, 64);
+    // Two-week buckets over ten years
+    private final RangeBitmap availableDay = new RangeBitmap(DATE_GRID_ORIGIN, 14, 261);
+    // Slots requiring an amenity, by amenity mask bit
+    private final List<BitSet> requiringAmenity = new ArrayList<>();
+
+    /**
+     * @param amenities the subscription's amenities encoded; those without a mask bit are left to the predicate
+     */
+    void add(Subscription subscription, AmenityMask amenities) {
+        Integer shared = slotsByFilter.get(subscription.filter());
+        if (shared != null) {
+            slots.set(shared, slots.get(shared).with(subscription));
+            return;
+        }
+        int slot = freeSlots.isEmpty() ? slots.size() : freeSlots.pop();
+        if (slot == slots.size())
+            slots.add(SharedFilter.of(subscription, amenities));
+        else
+            slots.set(slot, SharedFilter.of(subscription, amenities));
+        slotsByFilter.put(subscription.filter(), slot);
+
+        CanonicalFilter filter = subscription.filter();
+        Long studioValue = filter.studio() != null ? toLong(filter.studio()) : null;
+        studio.add(slot, studioValue, studioValue);
+        bedrooms.add(slot, toLong(filter.minBedrooms()), toLong(filter.maxBedrooms()));
+        bathrooms.add(slot, toLong(filter.minBathrooms()), toLong(filter.maxBathrooms()));
+        price.add(slot, toLong(filter.minPrice()), toLong(filter.maxPrice()));
+        floor.add(slot, toLong(filter.minFloor()), toLong(filter.maxFloor()));
+        availableDay.add(slot, toEpochDay(filter.minDate()), toEpochDay(filter.maxDate()));
+        BitSet.valueOf(new long[]{amenities.bits()}).stream().forEach(maskBit -> {
+            while (requiringAmenity.size() <= maskBit)
+                requiringAmenity.add(new BitSet());
+            requiringAmenity.get(maskBit).set(slot);
+        });
+        live.set(slot);
+    }
+
+    void remove(Subscription subscription) {
+        Integer slot = slotsByFilter.get(subscription.filter());
+        if (slot == null)
+            return;
+        SharedFilter remaining = slots.get(slot).without(subscription.id());
+        if (!remaining.subscribers().isEmpty()) {
+            slots.set(slot, remaining);
+            return;
+        }
+        slotsByFilter.remove(subscription.filter());
+        live.clear(slot);
+        studio.remove(slot);
+        bedrooms.remove(slot);
+        bathrooms.remove(slot);
+        price.remove(slot);
+        floor.remove(slot);
+        availableDay.remove(slot);
+        requiringAmenity.forEach(requiring -> requiring.clear(slot));
+        slots.set(slot, null);
+        freeSlots.push(slot);
+    }
+
+    boolean isEmpty() {
+        return slotsByFilter.isEmpty();
+    }
+
+    /**
+     * Number of distinct filters.
+     */
+    int size() {
+        return slotsByFilter.size();
+    }
+
+    /**
+     * @return filters that may match the unit, in slot order
+     */
+    List<SharedFilter> candidates(MatchableUnit unit) {
+        BitSet candidates = (BitSet) live.clone();
+        studio.retain(candidates, unit.studio() != null ? toLong(unit.studio()) : null);
+        bedrooms.retain(candidates, toLong(unit.bedrooms()));
+        bathrooms.retain(candidates, toLong(unit.bathrooms()));
+        price.retain(candidates, toLong(unit.price()));
+        floor.retain(candidates, toLong(unit.floor()));
+        availableDay.retain(candidates, toEpochDay(unit.availableDate()));
+        for (int maskBit = 0; maskBit < requiringAmenity.size() && !candidates.isEmpty(); maskBit++) {
+            if ((unit.amenityMask() & 1L << maskBit) == 0)
+                candidates.andNot(requiringAmenity.get(maskBit));
+        }
+
+        List<SharedFilter> result = new ArrayList<>(candidates.cardinality());
+        for (int slot = candidates.nextSetBit(0); slot >= 0; slot = candidates.nextSetBit(slot + 1))
+            result.add(slots.get(slot));
+        return result;
+    }
+
+    private static Long toLong(Integer value) {
+        return value != null ? value.longValue() : null;
+    }
+
+    private static long toLong(boolean value) {
+        return value ? 1 : 0;
+    }
+
+    private static Long toEpochDay(LocalDate date) {
+        return date != null ? date.toEpochDay() : null;
+    }
+}
@@ -1,17 +1,17 @@
 package com.grishin.apartment.checker.service;
 
 import com.grishin.apartment.checker.dto.ApartmentFilter;
-import com.grishin.apartment.checker.storage.ApartmentSpecifications;
+import com.grishin.apartment.checker.dto.ApartmentPage;
+import com.grishin.apartment.checker.dto.MatchableUnit;
+import com.grishin.apartment.checker.dto.UnitMessage;
+import com.grishin.apartment.checker.dto.UnitSort;
 import com.grishin.apartment.checker.storage.UnitAmenityRepository;
-import com.grishin.apartment.checker.storage.UnitRepository;
 import com.grishin.apartment.checker.storage.UserFilterPreferenceRepository;
-import com.grishin.apartment.checker.storage.entity.Unit;
 import com.grishin.apartment.checker.storage.entity.UserFilterPreference;
 import jakarta.transaction.Transactional;
 import lombok.extern.slf4j.Slf4j;
 import org.hibernate.Hibernate;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 
 import java.sql.Date;
@@ -26,27 +26,26 @@ import static com.grishin.apartment.checker.telegram.MainBotController.BOT_TIME_
 public class UserFilterService {
 
     private final UserFilterPreferenceRepository userFilterRepository;
-    private final UnitRepository unitRepository;
     private final UnitAmenityRepository unitAmenityRepository;
+    private final AmenityDictionary amenityDictionary;
+    private final SubscriptionIndex subscriptionIndex;
+    private final InventorySnapshotService inventorySnapshots;
+    private final ListingCache listingCache;
 
     @Autowired
     public UserFilterService(
             UserFilterPreferenceRepository userFilterRepository,
-            UnitRepository unitRepository,
-            UnitAmenityRepository unitAmenityRepository) {
+            UnitAmenityRepository unitAmenityRepository,
+            AmenityDictionary amenityDictionary,
+            SubscriptionIndex subscriptionIndex,
+            InventorySnapshotService inventorySnapshots,
+            ListingCache listingCache) {
         this.userFilterRepository = userFilterRepository;
-        this.unitRepository = unitRepository;
         this.unitAmenityRepository = unitAmenityRepository;
-    }
-
-    @Transactional
-    public List<Unit> findApartmentsWithFilters(ApartmentFilter filters) {
-        Specification<Unit> spec = ApartmentSpecifications.filterBy(filters);
-        List<Unit> units = unitRepository.findAll(spec);
-        for (Unit unit : units) {
-            Hibernate.initialize(unit.getAmenities());
-        }
-        return units;
+        this.amenityDictionary = amenityDictionary;
+        this.subscriptionIndex = subscriptionIndex;
+        this.inventorySnapshots = inventorySnapshots;
+        this.listingCache = listingCache;
     }
 
     @Transactional
@@ -90,13 +89,16 @@ public class UserFilterService {
         preference.setSelectedCommunity(selectedCommunityId);
         preference.getAmenities().clear();
         if (filters.getAmenities() != null) {
-            filters.getAmenities().stream()
-                    .map(unitAmenityRepository::findByAmenityName)
+            List<Long> amenityIds = filters.getAmenities().stream()
+                    .map(amenityDictionary::idOf)
                     .flatMap(Optional::stream)
-                    .forEach(preference.getAmenities()::add);
+                    .toList();
+            preference.getAmenities().addAll(unitAmenityRepository.findAllById(amenityIds));
         }
 
-        userFilterRepository.save(preference);
+        UserFilterPreference saved = userFilterRepository.save(preference);
+        subscriptionIndex.put(saved);
+        listingCache.evictFilter(saved.getId());
     }
 
     public List<UserFilterPreference> getAllUserPreferences(Long userId) {
@@ -111,24 +113,41 @@ public class UserFilterService {
         });
     }
 
+    /**
+     * One page of the preference's matching units. Pages come from {@link InventorySnapshot#page keyset pages} of
+     * the {@link InventorySnapshotService inventory snapshot}, and {@link ListingCache} keeps the ids of the pages a
+     * chat already reached, so turning back, or one page forward, only looks up that page's units.
+     */
     @Transactional
-    public List<Unit> findApartmentsForPreference(Long userId, Long filterId) {
-        Optional<UserFilterPreference> preference = userFilterRepository.findById(filterId)
-                .filter(p -> userId.equals(p.getUserId()));
-
-        return preference
-                .map(p -> findApartmentsWithFilters(ApartmentFilter.createFrom(p)))
-                .orElseGet(List::of);
+    public ApartmentPage findApartmentsForPreference(Long userId, Long filterId, UnitSort sort, int page, int pageSize) {
+        InventorySnapshot snapshot = inventorySnapshots.current();
+        ListingCache.Slice slice = listingCache.get(userId, filterId, sort, snapshot.epoch(), page, pageSize,
+                (after, limit) -> userFilterRepository.findById(filterId)
+                        .filter(p -> userId.equals(p.getUserId()))
+                        .map(p -> {
+                            ApartmentFilter filter = ApartmentFilter.createFrom(p);
+                            return snapshot.page(filter, amenityDictionary.encode(filter.getAmenities()), sort, after, limit);
+                        })
+                        .orElse(InventorySnapshot.Page.EMPTY));
+        if (slice.total() == 0)
+            return ApartmentPage.EMPTY;
+
+        List<UnitMessage> units = snapshot.units(slice.objectIds()).stream().map(MatchableUnit::message).toList();
+        return new ApartmentPage(units, slice.number(), slice.total());
     }
 
     @Transactional
     public void clearUserFilters(Long userId) {
         List<UserFilterPreference> prefs = userFilterRepository.findAllByUserId(userId);
         userFilterRepository.deleteAll(prefs);
+        subscriptionIndex.removeAll(prefs.stream().map(UserFilterPreference::getId).toList());
+        prefs.forEach(pref -> listingCache.evictFilter(pref.getId()));
     }
 
     @Transactional
     public void clearUserFilter(Long filterId) {
         userFilterRepository.deleteById(filterId);
+        subscriptionIndex.removeAll(List.of(filterId));
+        listingCache.evictFilter(filterId);
     }
 }
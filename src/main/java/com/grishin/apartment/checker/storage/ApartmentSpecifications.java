@@ -1,5 +1,6 @@
 package com.grishin.apartment.checker.storage;
 
+import com.grishin.apartment.checker.dto.AmenityMask;
 import com.grishin.apartment.checker.dto.ApartmentFilter;
 import com.grishin.apartment.checker.storage.entity.*;
 import jakarta.annotation.Nullable;
@@ -11,16 +12,17 @@ import java.util.List;
 
 public class ApartmentSpecifications {
 
-    public static Specification<Unit> filterBy(ApartmentFilter filter) {
-        return filterBy(filter, null);
+    /**
+     * @param amenities the filter's amenities, encoded by {@code AmenityDictionary.encode}
+     */
+    public static Specification<Unit> filterBy(ApartmentFilter filter, AmenityMask amenities) {
+        return filterBy(filter, amenities, null);
     }
 
-    public static Specification<Unit> filterBy(ApartmentFilter filter, @Nullable List<String> optionalObjectIds) {
+    public static Specification<Unit> filterBy(ApartmentFilter filter, AmenityMask amenities, @Nullable List<String> optionalObjectIds) {
         return (root, query, criteriaBuilder) -> {
             List<Predicate> predicates = new ArrayList<>();
 
-            query.distinct(true);
-
             Join<Unit, FloorPlan> floorPlanJoin = root.join("floorPlan", JoinType.LEFT);
             Join<Unit, Community> communityJoin = root.join("community", JoinType.INNER);
             Join<Unit, LeasePrice> leasePriceJoin = root.join("unitEarliestAvailable", JoinType.LEFT);
@@ -76,11 +78,14 @@ public class ApartmentSpecifications {
                 ));
             }
 
-            if (filter.getAmenities() != null && !filter.getAmenities().isEmpty()) {
-                Join<Unit, UnitAmenity> amenityJoin = root.join("amenities", JoinType.INNER);
-
-                Predicate amenitiesPredicate = amenityJoin.get("amenityName").in(filter.getAmenities());
+            if (amenities.bits() != 0) {
+                Expression<Long> present = criteriaBuilder.function("bitand", Long.class,
+                        root.get("amenityMask"), criteriaBuilder.literal(amenities.bits()));
+                predicates.add(criteriaBuilder.equal(present, amenities.bits()));
+            }
 
+            if (!amenities.unencoded().isEmpty()) {
+                // Amenities without a mask bit can only be counted in the join table
                 Subquery<Long> amenityCountSubquery = query.subquery(Long.class);
                 Root<Unit> subRoot = amenityCountSubquery.from(Unit.class);
                 Join<Unit, UnitAmenity> subAmenityJoin = subRoot.join("amenities", JoinType.INNER);
@@ -89,11 +94,11 @@ public class ApartmentSpecifications {
                 amenityCountSubquery.where(
                         criteriaBuilder.and(
                                 criteriaBuilder.equal(subRoot.get("objectId"), root.get("objectId")),
-                                subAmenityJoin.get("amenityName").in(filter.getAmenities())
+                                subAmenityJoin.get("amenityName").in(amenities.unencoded())
                         )
                 );
 
-                predicates.add(criteriaBuilder.equal(amenityCountSubquery, (long) filter.getAmenities().size()));
+                predicates.add(criteriaBuilder.equal(amenityCountSubquery, (long) amenities.unencoded().size()));
             }
 
             if (filter.getMinDate() != null || filter.getMaxDate() != null) {
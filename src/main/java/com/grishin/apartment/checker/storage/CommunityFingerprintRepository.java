@@ -0,0 +1,9 @@
+package com.grishin.apartment.checker.storage;
+
+import com.grishin.apartment.checker.storage.entity.CommunityFingerprint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface CommunityFingerprintRepository extends JpaRepository<CommunityFingerprint, String> {
+}
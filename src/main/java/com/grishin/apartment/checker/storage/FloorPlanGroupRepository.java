@@ -4,7 +4,12 @@ import com.grishin.apartment.checker.storage.entity.FloorPlanGroup;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+
 @Repository
 public interface FloorPlanGroupRepository extends JpaRepository<FloorPlanGroup, Long> {
     FloorPlanGroup findByGroupType(String groupType);
-}
\ No newline at end of file
+
+    List<FloorPlanGroup> findByGroupTypeIn(Collection<String> groupTypes);
+}
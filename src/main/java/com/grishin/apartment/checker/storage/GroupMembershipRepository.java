@@ -0,0 +1,71 @@
+package com.grishin.apartment.checker.storage;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.*;
+
+/**
+ * Reads and writes the group join tables directly, so membership can be reconciled as a set diff
+ * without initializing the entity collections on either side.
+ */
+@Repository
+@RequiredArgsConstructor
+public class GroupMembershipRepository {
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    /**
+     * @return group type to group id of every group the units are in, per unit object id
+     */
+    public Map<String, Map<String, Long>> findGroupsByUnit(Collection<String> objectIds) {
+        Map<String, Map<String, Long>> groupsByUnit = new HashMap<>();
+        if (objectIds.isEmpty())
+            return groupsByUnit;
+        jdbcTemplate.query("""
+                        select m.object_id, g.group_type, g.group_id
+                        from unit_id_group_mappings m join floor_plan_groups g on g.group_id = m.group_id
+                        where m.object_id in (:objectIds)""",
+                Map.of("objectIds", objectIds),
+                rs -> {
+                    groupsByUnit.computeIfAbsent(rs.getString(1), id -> new HashMap<>()).put(rs.getString(2), rs.getLong(3));
+                });
+        return groupsByUnit;
+    }
+
+    /**
+     * @return floor plan unique ids linked to each of the groups
+     */
+    public Map<Long, Set<String>> findFloorPlansByGroup(Collection<Long> groupIds) {
+        Map<Long, Set<String>> floorPlansByGroup = new HashMap<>();
+        if (groupIds.isEmpty())
+            return floorPlansByGroup;
+        jdbcTemplate.query("select group_id, floor_plan_unique_id from floor_plan_group_mappings where group_id in (:groupIds)",
+                Map.of("groupIds", groupIds),
+                rs -> {
+                    floorPlansByGroup.computeIfAbsent(rs.getLong(1), id -> new HashSet<>()).add(rs.getString(2));
+                });
+        return floorPlansByGroup;
+    }
+
+    public void addUnitEdges(Collection<UnitGroupEdge> edges) {
+        jdbcTemplate.getJdbcOperations().batchUpdate("insert into unit_id_group_mappings (group_id, object_id) values (?, ?)",
+                edges.stream().map(edge -> new Object[]{edge.groupId(), edge.objectId()}).toList());
+    }
+
+    public void removeUnitEdges(Collection<UnitGroupEdge> edges) {
+        jdbcTemplate.getJdbcOperations().batchUpdate("delete from unit_id_group_mappings where group_id = ? and object_id = ?",
+                edges.stream().map(edge -> new Object[]{edge.groupId(), edge.objectId()}).toList());
+    }
+
+    public void addFloorPlanEdges(Collection<FloorPlanGroupEdge> edges) {
+        jdbcTemplate.getJdbcOperations().batchUpdate("insert into floor_plan_group_mappings (group_id, floor_plan_unique_id) values (?, ?)",
+                edges.stream().map(edge -> new Object[]{edge.groupId(), edge.floorPlanUniqueId()}).toList());
+    }
+
+    public record UnitGroupEdge(String objectId, Long groupId) {
+    }
+
+    public record FloorPlanGroupEdge(Long groupId, String floorPlanUniqueId) {
+    }
+}
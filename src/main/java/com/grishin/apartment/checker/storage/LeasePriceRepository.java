@@ -2,11 +2,19 @@ package com.grishin.apartment.checker.storage;
 
 import com.grishin.apartment.checker.storage.entity.LeasePrice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.Optional;
 
 @Repository
 public interface LeasePriceRepository extends JpaRepository<LeasePrice, Long> {
     Optional<LeasePrice> findByUnitObjectId(String objectId);
-}
\ No newline at end of file
+
+    @Modifying
+    @Query("delete from LeasePrice p where p.unit.objectId in :objectIds")
+    int deleteByUnitObjectIds(@Param("objectIds") Collection<String> objectIds);
+}
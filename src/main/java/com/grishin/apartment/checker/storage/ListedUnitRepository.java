@@ -0,0 +1,45 @@
+package com.grishin.apartment.checker.storage;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stages the object ids a community currently lists, so delisted units are found by an anti-join in the database
+ * instead of loading every stored id of the community. Meant to be used within one transaction: stage, find the
+ * delisted ids, clear.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ListedUnitRepository {
+    private static final int STAGING_BATCH_SIZE = 1000;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public void stage(String communityId, Collection<String> objectIds) {
+        jdbcTemplate.getJdbcOperations().batchUpdate("insert into listed_units (object_id, community_id) values (?, ?)",
+                objectIds, STAGING_BATCH_SIZE, (ps, objectId) -> {
+                    ps.setString(1, objectId);
+                    ps.setString(2, communityId);
+                });
+    }
+
+    /**
+     * @return ids of the community's stored units that are not staged
+     */
+    public List<String> findDelistedObjectIds(String communityId) {
+        return jdbcTemplate.queryForList("""
+                        select u.object_id from units u
+                        where u.community_id = :communityId
+                        and not exists (select 1 from listed_units l where l.object_id = u.object_id)""",
+                Map.of("communityId", communityId), String.class);
+    }
+
+    public void clear(String communityId) {
+        jdbcTemplate.update("delete from listed_units where community_id = :communityId", Map.of("communityId", communityId));
+    }
+}
@@ -2,10 +2,19 @@ package com.grishin.apartment.checker.storage;
 
 import com.grishin.apartment.checker.storage.entity.UnitAmenity;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface UnitAmenityRepository extends JpaRepository<UnitAmenity, Long> {
     Optional<UnitAmenity> findByAmenityName(String amenityName);
+
+    List<UnitAmenity> findByAmenityNameIn(Collection<String> amenityNames);
+
+    @Query("select max(a.maskBit) from UnitAmenity a")
+    Integer findMaxMaskBit();
 }
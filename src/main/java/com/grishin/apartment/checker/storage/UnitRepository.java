@@ -1,13 +1,99 @@
 package com.grishin.apartment.checker.storage;
 
 import com.grishin.apartment.checker.storage.entity.Unit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
 
 @Repository
 public interface UnitRepository extends JpaRepository<Unit, String>, JpaSpecificationExecutor<Unit> {
     List<Unit> findByCommunityId(String communityId);
+
+    @EntityGraph(attributePaths = {"community", "floorPlan", "unitEarliestAvailable", "amenities"})
+    List<Unit> findWithDetailsByObjectIdIn(Collection<String> objectIds);
+
+    /**
+     * Flat rows with everything listings and notifications show, in one query without loading entities.
+     * Amenities come from {@link #findAmenityNamesByObjectIdIn}.
+     */
+    @Query("""
+            select u.objectId as objectId, c.id as communityId, u.unitIsStudio as studio, u.unitFloor as floor,
+                   u.buildingNumber as buildingNumber, u.unitMarketingName as unitMarketingName, u.amenityMask as amenityMask,
+                   fp.floorPlanName as floorPlanName, fp.floorPlanBed as bedrooms, fp.floorPlanBath as bathrooms,
+                   fp.floorPlanSqft as squareFeet, lp.price as price, lp.availableDate as availableDate
+            from Unit u
+            left join u.community c
+            left join u.floorPlan fp
+            left join u.unitEarliestAvailable lp
+            where u.objectId in :objectIds""")
+    List<UnitRow> findRowsByObjectIdIn(@Param("objectIds") Collection<String> objectIds);
+
+    @Query("select u.objectId as objectId, a.amenityName as amenityName from Unit u join u.amenities a where u.objectId in :objectIds")
+    List<AmenityName> findAmenityNamesByObjectIdIn(@Param("objectIds") Collection<String> objectIds);
+
+    @Query("select u.objectId as objectId, u.contentHash as contentHash from Unit u where u.objectId in :objectIds")
+    List<ContentHash> findContentHashesByObjectIdIn(@Param("objectIds") Collection<String> objectIds);
+
+    @Query("select u.objectId from Unit u")
+    List<String> findAllObjectIds();
+
+    @Modifying(flushAutomatically = true)
+    @Query(value = "delete from unit_id_group_mappings where object_id in (:objectIds)", nativeQuery = true)
+    int deleteGroupMappings(@Param("objectIds") Collection<String> objectIds);
+
+    @Modifying
+    @Query(value = "delete from unit_amenity_mappings where object_id in (:objectIds)", nativeQuery = true)
+    int deleteAmenityMappings(@Param("objectIds") Collection<String> objectIds);
+
+    @Modifying(clearAutomatically = true)
+    @Query("delete from Unit u where u.objectId in :objectIds")
+    int deleteByObjectIds(@Param("objectIds") Collection<String> objectIds);
+
+    interface ContentHash {
+        String getObjectId();
+
+        Long getContentHash();
+    }
+
+    interface UnitRow {
+        String getObjectId();
+
+        String getCommunityId();
+
+        Boolean getStudio();
+
+        Integer getFloor();
+
+        String getBuildingNumber();
+
+        String getUnitMarketingName();
+
+        Long getAmenityMask();
+
+        String getFloorPlanName();
+
+        Integer getBedrooms();
+
+        Integer getBathrooms();
+
+        Integer getSquareFeet();
+
+        Integer getPrice();
+
+        Date getAvailableDate();
+    }
+
+    interface AmenityName {
+        String getObjectId();
+
+        String getAmenityName();
+    }
 }
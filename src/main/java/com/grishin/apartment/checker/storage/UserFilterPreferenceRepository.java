@@ -3,6 +3,7 @@ package com.grishin.apartment.checker.storage;
 import com.grishin.apartment.checker.storage.entity.UserFilterPreference;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
 import java.util.List;
 import java.util.Optional;
@@ -20,4 +21,8 @@ public interface UserFilterPreferenceRepository extends JpaRepository<UserFilter
 
     @EntityGraph(attributePaths = "amenities")
     List<UserFilterPreference> findBySelectedCommunity(String community);
+
+    @EntityGraph(attributePaths = "amenities")
+    @Query("select p from UserFilterPreference p")
+    List<UserFilterPreference> findAllWithAmenities();
 }
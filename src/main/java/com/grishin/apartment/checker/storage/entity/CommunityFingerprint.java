@@ -0,0 +1,28 @@
+package com.grishin.apartment.checker.storage.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "community_fingerprints")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CommunityFingerprint {
+    @Id
+    private String communityId;
+
+    @Column(nullable = false)
+    private String fingerprint;
+
+    private Integer unitCount;
+
+    private LocalDateTime updatedAt;
+}
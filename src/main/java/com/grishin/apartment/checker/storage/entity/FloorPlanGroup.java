@@ -13,7 +13,8 @@ import java.util.Set;
 @AllArgsConstructor
 public class FloorPlanGroup {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "floor_plan_groups_seq")
+    @SequenceGenerator(name = "floor_plan_groups_seq", sequenceName = "floor_plan_groups_seq", allocationSize = 50)
     private Long groupId;
 
     private String groupType;
@@ -30,11 +31,6 @@ public class FloorPlanGroup {
 
     @ToString.Exclude
     @EqualsAndHashCode.Exclude
-    @ManyToMany(cascade = {CascadeType.PERSIST, CascadeType.MERGE})
-    @JoinTable(
-            name = "unit_id_group_mappings",
-            joinColumns = @JoinColumn(name = "group_id"),
-            inverseJoinColumns = @JoinColumn(name = "object_id")
-    )
+    @ManyToMany(mappedBy = "groups")
     private Set<Unit> units = new HashSet<>();
 }
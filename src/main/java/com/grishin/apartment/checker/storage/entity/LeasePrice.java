@@ -14,7 +14,8 @@ import java.util.Date;
 @AllArgsConstructor
 public class LeasePrice {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "lease_prices_seq")
+    @SequenceGenerator(name = "lease_prices_seq", sequenceName = "lease_prices_seq", allocationSize = 50)
     private Long id;
 
     private Integer price;
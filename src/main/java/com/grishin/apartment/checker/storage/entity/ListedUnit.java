@@ -0,0 +1,27 @@
+package com.grishin.apartment.checker.storage.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Staging row for an object id listed in the current sync of a community. Rows only live for the transaction that
+ * removes delisted units, see {@code ListedUnitRepository}.
+ */
+@Entity
+@Table(name = "listed_units", indexes = @Index(name = "idx_listed_units_community", columnList = "communityId"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ListedUnit {
+    @Id
+    private String objectId;
+
+    @Column(nullable = false)
+    private String communityId;
+}
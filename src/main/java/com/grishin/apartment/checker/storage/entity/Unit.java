@@ -27,6 +27,19 @@ public class Unit {
     private Boolean unitHasDiscount;
     private String featuredAmenity;
 
+    /**
+     * {@code Fingerprints.unit} of the source record this row was last written from. Null until the first sync.
+     */
+    @EqualsAndHashCode.Exclude
+    private Long contentHash;
+
+    /**
+     * Amenities of the unit as {@code AmenityMask} bits, kept in step with {@link #amenities}. Amenities whose bit
+     * doesn't fit are only in the join table.
+     */
+    @EqualsAndHashCode.Exclude
+    private Long amenityMask;
+
     @ToString.Exclude
     @EqualsAndHashCode.Exclude
     @ManyToOne
@@ -47,7 +60,12 @@ public class Unit {
 
     @ToString.Exclude
     @EqualsAndHashCode.Exclude
-    @ManyToMany(mappedBy = "units")
+    @ManyToMany
+    @JoinTable(
+            name = "unit_id_group_mappings",
+            joinColumns = @JoinColumn(name = "object_id"),
+            inverseJoinColumns = @JoinColumn(name = "group_id")
+    )
     private Set<FloorPlanGroup> groups = new HashSet<>();
 
     @ToString.Exclude
@@ -3,11 +3,14 @@ package com.grishin.apartment.checker.storage.entity;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
 import jakarta.persistence.Table;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.ManyToMany;
 import jakarta.persistence.Column;
 import java.util.HashSet;
@@ -20,12 +23,22 @@ import java.util.Set;
 @AllArgsConstructor
 public class UnitAmenity {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "unit_amenities_seq")
+    @SequenceGenerator(name = "unit_amenities_seq", sequenceName = "unit_amenities_seq", allocationSize = 50)
     private Long id;
 
     @Column(unique = true)
     private String amenityName;
 
+    /**
+     * Small stable number of the amenity, its bit in {@link Unit#getAmenityMask()}. Assigned once when the amenity
+     * is first stored.
+     */
+    @Column(unique = true)
+    private Integer maskBit;
+
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     @ManyToMany(mappedBy = "amenities")
     private Set<Unit> units = new HashSet<>();
 }
@@ -16,7 +16,8 @@ import java.util.Set;
 @AllArgsConstructor
 public class UserFilterPreference {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "user_filter_preferences_seq")
+    @SequenceGenerator(name = "user_filter_preferences_seq", sequenceName = "user_filter_preferences_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "user_id", nullable = false)
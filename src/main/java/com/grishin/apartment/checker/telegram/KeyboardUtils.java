@@ -1,7 +1,8 @@
 package com.grishin.apartment.checker.telegram;
 
+import com.grishin.apartment.checker.dto.ApartmentPage;
 import com.grishin.apartment.checker.dto.UnitMessage;
-import com.grishin.apartment.checker.storage.entity.Unit;
+import com.grishin.apartment.checker.dto.UnitSort;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.ReplyKeyboard;
@@ -24,10 +25,9 @@ public class KeyboardUtils {
     public static final SimpleDateFormat PRETTY_DATE_FORMAT = new SimpleDateFormat("dd/MM/yyyy");
     public static final int PAGE_SIZE = 5;
 
-    public static InlineKeyboardMarkup generateApartmentListKeyboard(List<Unit> apartments, int page) {
-        int totalPages = (int) Math.ceil((double) apartments.size() / PAGE_SIZE);
-        int startIndex = page * PAGE_SIZE;
-        int endIndex = Math.min(startIndex + PAGE_SIZE, apartments.size());
+    public static InlineKeyboardMarkup generateApartmentListKeyboard(ApartmentPage apartments, UnitSort sort) {
+        int page = apartments.number();
+        int totalPages = apartments.totalPages(PAGE_SIZE);
 
         InlineKeyboardMarkup markup = new InlineKeyboardMarkup();
         List<List<InlineKeyboardButton>> keyboard = new ArrayList<>();
@@ -47,7 +47,7 @@ public class KeyboardUtils {
         pageButton.setCallbackData("noop");
         navigationRow.add(pageButton);
 
-        if (page < totalPages - 1) {
+        if (apartments.hasNext(PAGE_SIZE)) {
             InlineKeyboardButton nextButton = new InlineKeyboardButton();
             nextButton.setText("Next ▶️");
             nextButton.setCallbackData("page:" + (page + 1));
@@ -55,6 +55,15 @@ public class KeyboardUtils {
         }
 
         keyboard.add(navigationRow);
+
+        List<InlineKeyboardButton> sortRow = new ArrayList<>();
+        for (UnitSort option : UnitSort.values()) {
+            InlineKeyboardButton sortButton = new InlineKeyboardButton();
+            sortButton.setText(option == sort ? "✅ " + option.getLabel() : option.getLabel());
+            sortButton.setCallbackData("sort:" + option.name());
+            sortRow.add(sortButton);
+        }
+        keyboard.add(sortRow);
         markup.setKeyboard(keyboard);
 
         return markup;
@@ -3,11 +3,11 @@ package com.grishin.apartment.checker.telegram;
 import com.grishin.apartment.checker.config.ApartmentsConfig;
 import com.grishin.apartment.checker.config.CommunityConfig;
 import com.grishin.apartment.checker.dto.ApartmentFilter;
+import com.grishin.apartment.checker.dto.ApartmentPage;
 import com.grishin.apartment.checker.dto.UnitMessage;
+import com.grishin.apartment.checker.dto.UnitSort;
+import com.grishin.apartment.checker.service.AmenityDictionary;
 import com.grishin.apartment.checker.service.UserFilterService;
-import com.grishin.apartment.checker.storage.UnitAmenityRepository;
-import com.grishin.apartment.checker.storage.entity.Unit;
-import com.grishin.apartment.checker.storage.entity.UnitAmenity;
 import com.grishin.apartment.checker.storage.entity.UserFilterPreference;
 import io.github.dostonhamrakulov.InlineCalendarBuilder;
 import io.github.dostonhamrakulov.InlineCalendarCommandUtil;
@@ -16,7 +16,6 @@ import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 import org.telegram.telegrambots.meta.TelegramBotsApi;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
 import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageReplyMarkup;
@@ -36,7 +35,6 @@ import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 
 import static com.grishin.apartment.checker.telegram.KeyboardUtils.*;
-import static java.util.stream.Collectors.toCollection;
 
 @Slf4j
 @Service
@@ -46,13 +44,14 @@ public class MainBotController {
     private final Map<Long, String> selectedCommunities = new HashMap<>();
     private final Map<Long, Set<String>> userSelections = new ConcurrentHashMap<>();
     private final Map<Long, Integer> userPages = new ConcurrentHashMap<>();
+    private final Map<Long, UnitSort> listingSorts = new ConcurrentHashMap<>();
     private final Map<Long, Long> editingFilterIds = new HashMap<>();
     private final Map<Long, Long> viewingFilterIds = new HashMap<>();
 
     private final TelegramBotClient botClient;
     private final ApartmentsConfig apartmentsConfig;
     private final UserFilterService userFilterService;
-    private final UnitAmenityRepository unitAmenityRepository;
+    private final AmenityDictionary amenityDictionary;
 
     private final InlineCalendarBuilder inlineCalendarBuilder = new InlineCalendarBuilder(LanguageEnum.EN);
     public static final ZoneId BOT_TIME_ZONE = ZoneId.of("America/Los_Angeles");
@@ -62,10 +61,10 @@ public class MainBotController {
             @Value("${telegram.bot.name}") String botName,
             ApartmentsConfig apartmentsConfig,
             UserFilterService userFilterService,
-            UnitAmenityRepository unitAmenityRepository) {
+            AmenityDictionary amenityDictionary) {
         this.apartmentsConfig = apartmentsConfig;
         this.userFilterService = userFilterService;
-        this.unitAmenityRepository = unitAmenityRepository;
+        this.amenityDictionary = amenityDictionary;
         this.botClient = new TelegramBotClient(token, botName, this::onUpdateReceived);
     }
 
@@ -275,6 +274,11 @@ public class MainBotController {
                     userPages.put(chatId, page);
                     updateApartmentList(chatId, messageId);
                     break;
+                case "sort":
+                    listingSorts.put(chatId, UnitSort.valueOf(parts[1]));
+                    userPages.put(chatId, 0);
+                    updateApartmentList(chatId, messageId);
+                    break;
                 case "sub":
                     handleSubscriptionCallback(parts, chatId);
                     break;
@@ -602,58 +606,60 @@ public class MainBotController {
             sendSubscriptionSelectionForView(chatId);
             return;
         }
-        List<Unit> apartments = userFilterService.findApartmentsForPreference(chatId, filterId);
-        if (apartments.isEmpty() && userFilterService.getAllUserPreferences(chatId).stream().noneMatch(p -> p.getId().equals(filterId))) {
+        ApartmentPage apartments = findApartmentPage(chatId, filterId);
+        if (apartments.units().isEmpty() && userFilterService.getAllUserPreferences(chatId).stream().noneMatch(p -> p.getId().equals(filterId))) {
             viewingFilterIds.remove(chatId);
             sendSubscriptionSelectionForView(chatId);
             return;
         }
 
-        int currentPage = userPages.getOrDefault(chatId, 0);
-
         SendMessage message = new SendMessage();
         message.setChatId(String.valueOf(chatId));
-        message.setText(generateApartmentListText(apartments, currentPage));
-        message.setReplyMarkup(generateApartmentListKeyboard(apartments, currentPage));
+        message.setText(generateApartmentListText(apartments));
+        message.setReplyMarkup(generateApartmentListKeyboard(apartments, listingSort(chatId)));
         message.enableHtml(true);
 
         botClient.execute(message);
     }
 
-    @Transactional
     private void updateApartmentList(long chatId, int messageId) throws TelegramApiException {
         Long filterId = viewingFilterIds.get(chatId);
-        List<Unit> apartments = filterId != null
-                ? userFilterService.findApartmentsForPreference(chatId, filterId)
-                : List.of();
+        ApartmentPage apartments = filterId != null
+                ? findApartmentPage(chatId, filterId)
+                : ApartmentPage.EMPTY;
 
-        int currentPage = userPages.getOrDefault(chatId, 0);
         EditMessageText editMessage = new EditMessageText();
         editMessage.setChatId(String.valueOf(chatId));
         editMessage.setMessageId(messageId);
-        editMessage.setText(generateApartmentListText(apartments, currentPage));
-        editMessage.setReplyMarkup(generateApartmentListKeyboard(apartments, currentPage));
+        editMessage.setText(generateApartmentListText(apartments));
+        editMessage.setReplyMarkup(generateApartmentListKeyboard(apartments, listingSort(chatId)));
         editMessage.enableHtml(true);
 
         botClient.execute(editMessage);
     }
 
-    private String generateApartmentListText(List<Unit> apartments, int page) {
-        int totalPages = (int) Math.ceil((double) apartments.size() / PAGE_SIZE);
-        int startIndex = page * PAGE_SIZE;
-        int endIndex = Math.min(startIndex + PAGE_SIZE, apartments.size());
+    private ApartmentPage findApartmentPage(long chatId, long filterId) {
+        ApartmentPage apartments = userFilterService.findApartmentsForPreference(chatId, filterId, listingSort(chatId),
+                userPages.getOrDefault(chatId, 0), PAGE_SIZE);
+        userPages.put(chatId, apartments.number());
+        return apartments;
+    }
+
+    private UnitSort listingSort(long chatId) {
+        return listingSorts.getOrDefault(chatId, UnitSort.PRICE);
+    }
 
+    private String generateApartmentListText(ApartmentPage apartments) {
         StringBuilder sb = new StringBuilder();
-        if (startIndex >= apartments.size()) {
+        if (apartments.units().isEmpty()) {
             sb.append("No relevant apartments found.");
             return sb.toString();
         }
 
-        sb.append("<b>Available Apartments</b> (Page ").append(page + 1).append(" of ").append(totalPages).append(")\n\n");
+        sb.append("<b>Available Apartments</b> (Page ").append(apartments.number() + 1).append(" of ").append(apartments.totalPages(PAGE_SIZE)).append(")\n\n");
 
-        for (int i = startIndex; i < endIndex; i++) {
-            Unit apt = apartments.get(i);
-            sb.append(alertAvailableUnitMessage(UnitMessage.fromEntity(apt)));
+        for (UnitMessage apt : apartments.units()) {
+            sb.append(alertAvailableUnitMessage(apt));
         }
 
         return sb.toString();
@@ -883,8 +889,7 @@ public class MainBotController {
 
     private InlineKeyboardMarkup generateSelectionKeyboard(long userId) {
         Set<String> selections = userSelections.getOrDefault(userId, new HashSet<>());
-        List<String> amenities = unitAmenityRepository.findAll().stream()
-                .map(UnitAmenity::getAmenityName).collect(toCollection(ArrayList::new));
+        List<String> amenities = amenityDictionary.names();
         InlineKeyboardMarkup markup = new InlineKeyboardMarkup();
         List<List<InlineKeyboardButton>> keyboard = new ArrayList<>();
 
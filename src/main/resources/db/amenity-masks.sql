@@ -0,0 +1,22 @@
+-- Adds amenity mask bits and backfills the per-unit amenity masks the filters now use.
+-- Run once against the existing Postgres database before deploying the new version.
+-- Every stored amenity gets a bit in id order; units get the OR of the bits of their amenities.
+-- Bits from 64 on don't fit the mask, those amenities are still matched through unit_amenity_mappings.
+
+BEGIN;
+
+ALTER TABLE unit_amenities ADD COLUMN IF NOT EXISTS mask_bit INTEGER UNIQUE;
+UPDATE unit_amenities a
+SET mask_bit = numbered.mask_bit
+FROM (SELECT id, ROW_NUMBER() OVER (ORDER BY id) - 1 AS mask_bit FROM unit_amenities WHERE mask_bit IS NULL) numbered
+WHERE a.id = numbered.id
+  AND NOT EXISTS (SELECT 1 FROM unit_amenities assigned WHERE assigned.mask_bit IS NOT NULL);
+
+ALTER TABLE units ADD COLUMN IF NOT EXISTS amenity_mask BIGINT;
+UPDATE units u
+SET amenity_mask = COALESCE((SELECT bit_or(1::BIGINT << a.mask_bit)
+                             FROM unit_amenity_mappings m
+                             JOIN unit_amenities a ON a.id = m.amenity_id
+                             WHERE m.object_id = u.object_id AND a.mask_bit < 64), 0);
+
+COMMIT;
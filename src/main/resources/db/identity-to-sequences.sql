@@ -0,0 +1,29 @@
+-- Moves lease_prices, floor_plan_groups, unit_amenities and user_filter_preferences from IDENTITY ids
+-- to the pooled sequences the entities now use (allocationSize = 50).
+-- Run once against the existing Postgres database before deploying the new version.
+-- With the pooled optimizer a sequence value is the upper end of the next block of 50 ids,
+-- so every sequence is positioned 50 past the current max id.
+
+BEGIN;
+
+CREATE SEQUENCE IF NOT EXISTS lease_prices_seq INCREMENT BY 50;
+SELECT setval('lease_prices_seq', COALESCE((SELECT MAX(id) FROM lease_prices), 0) + 50, false);
+ALTER TABLE lease_prices ALTER COLUMN id DROP IDENTITY IF EXISTS;
+ALTER TABLE lease_prices ALTER COLUMN id DROP DEFAULT;
+
+CREATE SEQUENCE IF NOT EXISTS floor_plan_groups_seq INCREMENT BY 50;
+SELECT setval('floor_plan_groups_seq', COALESCE((SELECT MAX(group_id) FROM floor_plan_groups), 0) + 50, false);
+ALTER TABLE floor_plan_groups ALTER COLUMN group_id DROP IDENTITY IF EXISTS;
+ALTER TABLE floor_plan_groups ALTER COLUMN group_id DROP DEFAULT;
+
+CREATE SEQUENCE IF NOT EXISTS unit_amenities_seq INCREMENT BY 50;
+SELECT setval('unit_amenities_seq', COALESCE((SELECT MAX(id) FROM unit_amenities), 0) + 50, false);
+ALTER TABLE unit_amenities ALTER COLUMN id DROP IDENTITY IF EXISTS;
+ALTER TABLE unit_amenities ALTER COLUMN id DROP DEFAULT;
+
+CREATE SEQUENCE IF NOT EXISTS user_filter_preferences_seq INCREMENT BY 50;
+SELECT setval('user_filter_preferences_seq', COALESCE((SELECT MAX(id) FROM user_filter_preferences), 0) + 50, false);
+ALTER TABLE user_filter_preferences ALTER COLUMN id DROP IDENTITY IF EXISTS;
+ALTER TABLE user_filter_preferences ALTER COLUMN id DROP DEFAULT;
+
+COMMIT;
@@ -0,0 +1,146 @@
+package com.grishin.apartment.checker;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Local stand-in for the /units/rank endpoint that serves the apartment-*.json fixtures.
+ */
+public class StubApartmentsServer implements AutoCloseable {
+
+    public record ReceivedRequest(String acceptEncoding, int clientPort) {}
+
+    private final HttpServer server;
+    private final List<ReceivedRequest> requests = new CopyOnWriteArrayList<>();
+
+    private volatile String fixture = "apartment-setup.json";
+    private volatile String encoding;
+    private volatile Duration delay = Duration.ZERO;
+    private final AtomicInteger remainingFailures = new AtomicInteger();
+    private volatile int failureStatus = 503;
+    private final AtomicReference<Duration> nextDelay = new AtomicReference<>();
+
+    private StubApartmentsServer(HttpServer server) {
+        this.server = server;
+    }
+
+    public static StubApartmentsServer start() throws IOException {
+        HttpServer httpServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        StubApartmentsServer stub = new StubApartmentsServer(httpServer);
+        httpServer.createContext("/units/rank", stub::handle);
+        httpServer.setExecutor(Executors.newCachedThreadPool());
+        httpServer.start();
+        return stub;
+    }
+
+    public String url() {
+        return "http://localhost:" + server.getAddress().getPort() + "/units/rank";
+    }
+
+    public StubApartmentsServer serving(String fixture) {
+        this.fixture = fixture;
+        return this;
+    }
+
+    /**
+     * Compress responses with the given content coding when the client accepts it. {@code null} disables compression.
+     */
+    public StubApartmentsServer encodedWith(String encoding) {
+        this.encoding = encoding;
+        return this;
+    }
+
+    public StubApartmentsServer delayedBy(Duration delay) {
+        this.delay = delay;
+        return this;
+    }
+
+    /**
+     * Answer the next {@code times} requests with {@code status} and an empty body.
+     */
+    public StubApartmentsServer failNext(int times, int status) {
+        this.failureStatus = status;
+        this.remainingFailures.set(times);
+        return this;
+    }
+
+    /**
+     * Delay only the next request, e.g. to trigger a hedged request.
+     */
+    public StubApartmentsServer delayNext(Duration delay) {
+        this.nextDelay.set(delay);
+        return this;
+    }
+
+    public List<ReceivedRequest> requests() {
+        return requests;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            exchange.getRequestBody().readAllBytes();
+            String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+            requests.add(new ReceivedRequest(acceptEncoding, exchange.getRemoteAddress().getPort()));
+
+            if (remainingFailures.getAndUpdate(remaining -> Math.max(0, remaining - 1)) > 0) {
+                exchange.sendResponseHeaders(failureStatus, -1);
+                return;
+            }
+
+            Duration oneOffDelay = nextDelay.getAndSet(null);
+            sleep(oneOffDelay != null ? oneOffDelay : delay);
+
+            byte[] body = new ClassPathResource(fixture).getInputStream().readAllBytes();
+            String contentEncoding = encoding;
+            if (contentEncoding != null && (acceptEncoding == null || !acceptEncoding.contains(contentEncoding)))
+                contentEncoding = null;
+            if (contentEncoding != null) {
+                body = encode(body, contentEncoding);
+                exchange.getResponseHeaders().set("Content-Encoding", contentEncoding);
+            }
+
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        }
+    }
+
+    private static byte[] encode(byte[] body, String encoding) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream os = encoding.equals("gzip") ? new GZIPOutputStream(bytes) : new DeflaterOutputStream(bytes)) {
+            os.write(body);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void sleep(Duration duration) {
+        if (duration.isZero())
+            return;
+        try {
+            Thread.sleep(duration.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
@@ -0,0 +1,99 @@
+package com.grishin.apartment.checker.service;
+
+import com.grishin.apartment.checker.config.ApartmentsConfig;
+import com.grishin.apartment.checker.config.CommunityConfig;
+import com.grishin.apartment.checker.config.ScheduleConfig;
+import com.grishin.apartment.checker.dto.SyncStats;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+public class AdaptivePollingSchedulerTest {
+
+    private final CommunityConfig subscribed = new CommunityConfig("subscribed", "Promenade");
+    private final CommunityConfig abandoned = new CommunityConfig("abandoned", "Pacifica");
+
+    private ApartmentChecker apartmentChecker;
+    private SubscriptionIndex subscriptionIndex;
+    private ScheduleConfig scheduleConfig;
+    private AdaptivePollingScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        apartmentChecker = mock(ApartmentChecker.class);
+        subscriptionIndex = mock(SubscriptionIndex.class);
+        scheduleConfig = new ScheduleConfig();
+        scheduleConfig.setJitter(0);
+        scheduleConfig.setInitialInterval(Duration.ZERO);
+        ApartmentsConfig apartmentsConfig = new ApartmentsConfig();
+        apartmentsConfig.setCommunities(List.of(subscribed, abandoned));
+        when(subscriptionIndex.subscriberCounts()).thenReturn(Map.of("subscribed", 3));
+        scheduler = new AdaptivePollingScheduler(apartmentChecker, apartmentsConfig, scheduleConfig, subscriptionIndex);
+    }
+
+    @Test
+    void testPollDueCommunities_SkipsCommunitiesWithoutSubscribers() {
+        when(apartmentChecker.checkForNewApartments(anyList())).thenReturn(Map.of(subscribed, new SyncStats()));
+
+        scheduler.pollDueCommunities();
+
+        verify(apartmentChecker).checkForNewApartments(List.of(subscribed));
+    }
+
+    @Test
+    void testPollDueCommunities_WaitsForNextInterval() {
+        when(apartmentChecker.checkForNewApartments(anyList())).thenReturn(Map.of(subscribed, new SyncStats()));
+
+        scheduler.pollDueCommunities();
+        scheduler.pollDueCommunities();
+
+        verify(apartmentChecker, times(1)).checkForNewApartments(anyList());
+    }
+
+    @Test
+    void testPollDueCommunities_CountsSubscribersOncePerTick() {
+        when(apartmentChecker.checkForNewApartments(anyList())).thenReturn(Map.of(subscribed, new SyncStats()));
+
+        scheduler.pollDueCommunities();
+        scheduler.pollDueCommunities();
+
+        verify(subscriptionIndex, times(2)).subscriberCounts();
+    }
+
+    @Test
+    void testPollDueCommunities_BacksOffAfterFailure() {
+        when(apartmentChecker.checkForNewApartments(anyList())).thenReturn(Map.of());
+
+        scheduler.pollDueCommunities();
+        scheduler.pollDueCommunities();
+
+        verify(apartmentChecker, times(1)).checkForNewApartments(anyList());
+    }
+
+    @Test
+    void testBackoff_DoublesWithinBounds() {
+        assertEquals(scheduleConfig.getMinInterval(), scheduler.backoff(Duration.ZERO));
+        assertEquals(Duration.ofHours(1), scheduler.backoff(Duration.ofMinutes(30)));
+        assertEquals(scheduleConfig.getMaxInterval(), scheduler.backoff(Duration.ofHours(4)));
+        assertEquals(scheduleConfig.getMaxInterval(), scheduler.backoff(scheduleConfig.getMaxInterval()));
+    }
+
+    @Test
+    void testIntervalFor_ShrinksWithChurnAndSubscribers() {
+        Duration quiet = scheduler.intervalFor(0, 1);
+        Duration busy = scheduler.intervalFor(5, 1);
+        Duration popular = scheduler.intervalFor(0, 15);
+
+        assertTrue(busy.compareTo(quiet) < 0);
+        assertTrue(popular.compareTo(quiet) < 0);
+        assertEquals(scheduleConfig.getMinInterval(), scheduler.intervalFor(1000, 1000));
+        assertTrue(scheduler.intervalFor(0, 0).compareTo(scheduleConfig.getMaxInterval()) <= 0);
+    }
+}
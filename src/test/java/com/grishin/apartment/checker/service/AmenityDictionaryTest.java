@@ -0,0 +1,79 @@
+package com.grishin.apartment.checker.service;
+
+import com.grishin.apartment.checker.dto.AmenityMask;
+import com.grishin.apartment.checker.storage.UnitAmenityRepository;
+import com.grishin.apartment.checker.storage.entity.UnitAmenity;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class AmenityDictionaryTest {
+
+    private UnitAmenityRepository repository;
+    private AmenityDictionary dictionary;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(UnitAmenityRepository.class);
+        when(repository.findAll()).thenReturn(List.of(amenity(2L, "Balcony", 1), amenity(1L, "Pool", 0), amenity(4L, "Sauna", null)));
+        dictionary = new AmenityDictionary(repository);
+        dictionary.load();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive())
+            TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    @Test
+    void testLookups_ServedFromMemory() {
+        assertEquals(List.of("Pool", "Balcony", "Sauna"), dictionary.names());
+        assertEquals(Optional.of(2L), dictionary.idOf("Balcony"));
+        assertEquals(Optional.of("Pool"), dictionary.nameOf(1L));
+        assertEquals(2L, dictionary.reference("Balcony").orElseThrow().getId());
+        assertEquals(1, dictionary.reference("Balcony").orElseThrow().getMaskBit());
+        assertTrue(dictionary.reference("Garage").isEmpty());
+
+        verify(repository, times(1)).findAll();
+        verifyNoMoreInteractions(repository);
+    }
+
+    @Test
+    void testRegister_WaitsForCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+
+        dictionary.register(List.of(amenity(3L, "Garage", 2)));
+        assertTrue(dictionary.idOf("Garage").isEmpty());
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        assertEquals(Optional.of(3L), dictionary.idOf("Garage"));
+        assertEquals(List.of("Pool", "Balcony", "Sauna", "Garage"), dictionary.names());
+    }
+
+    @Test
+    void testEncode_KeepsAmenitiesWithoutMaskBitByName() {
+        AmenityMask mask = dictionary.encode(List.of("Pool", "Balcony", "Sauna", "Garage"));
+
+        assertEquals(0b11L, mask.bits());
+        assertEquals(Set.of("Sauna", "Garage"), mask.unencoded());
+        assertTrue(mask.isContainedIn(0b111L, Set.of("Sauna", "Garage")));
+        assertFalse(mask.isContainedIn(0b101L, Set.of("Sauna", "Garage")));
+        assertFalse(mask.isContainedIn(0b11L, Set.of("Sauna")));
+        assertSame(AmenityMask.NONE, dictionary.encode(List.of()));
+    }
+
+    private static UnitAmenity amenity(Long id, String name, Integer maskBit) {
+        return new UnitAmenity(id, name, maskBit, new HashSet<>());
+    }
+}
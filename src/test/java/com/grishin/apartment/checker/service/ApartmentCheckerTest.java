@@ -10,6 +10,7 @@ import com.grishin.apartment.checker.storage.UnitRepository;
 import com.grishin.apartment.checker.storage.UserFilterPreferenceRepository;
 import com.grishin.apartment.checker.storage.entity.UserFilterPreference;
 import com.grishin.apartment.checker.telegram.MainBotController;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -44,6 +45,16 @@ public class ApartmentCheckerTest {
     private DataSyncService dataSyncService;
     @Autowired
     private ApartmentChecker apartmentChecker;
+    @Autowired
+    private InventoryFingerprintService fingerprintService;
+    @Autowired
+    private AmenityDictionary amenityDictionary;
+    @Autowired
+    private InventorySnapshotService inventorySnapshots;
+    @Autowired
+    private ReferenceDataCache referenceDataCache;
+    @Autowired
+    private MeterRegistry meterRegistry;
 
     @MockitoBean
     private IrvineCompanyClient client;
@@ -62,9 +73,14 @@ public class ApartmentCheckerTest {
     @BeforeEach
     @Transactional
     void setUp() {
-        floorPlanGroupRepository.deleteAll();
+        // Units own their group mappings, so they go first
         unitRepository.deleteAll();
+        floorPlanGroupRepository.deleteAll();
         unitAmenityRepository.deleteAll();
+        amenityDictionary.load();
+        inventorySnapshots.load();
+        fingerprintService.evictAll();
+        referenceDataCache.evictAll();
     }
 
     @Test
@@ -102,6 +118,7 @@ public class ApartmentCheckerTest {
         // Verify new apartments were added
         int unitsAdded = 6;
         Assertions.assertEquals(initialUnitsCount + unitsAdded, unitRepository.count());
+        Assertions.assertEquals(initialUnitsCount + unitsAdded, inventorySnapshots.current().size());
 
         // Verify notification was sent
         verify(bot, times(unitsAdded)).sendMessage(eq(userId), anyString());
@@ -141,8 +158,28 @@ public class ApartmentCheckerTest {
         // Verify new apartments were added
         int unitsDeleted = 3;
         Assertions.assertEquals(initialUnitsCount - unitsDeleted, unitRepository.count());
+        Assertions.assertEquals(initialUnitsCount - unitsDeleted, inventorySnapshots.current().size());
 
         // Verify notification was sent
         verify(bot, never()).sendMessage(anyLong(), anyString());
     }
+
+    @Test
+    void testUnchangedInventory_SkipsProcessing() throws Exception {
+        CommunityConfig communityConfig = new CommunityConfig("Unchanged ID", "Promenade");
+        when(apartmentsConfig.getCommunities())
+                .thenReturn(List.of(communityConfig));
+        List<FloorPlanGroupDTO> initialData = TestDataProvider.getInitialApartmentData();
+        when(client.fetchApartments(matches(communityConfig.getCommunityId()), anyInt()))
+                .thenReturn(initialData);
+
+        apartmentChecker.syncApartmentData();
+        apartmentChecker.checkForNewApartments();
+
+        long initialUnitsCount = initialData.stream().mapToLong(x -> x.getUnits().size()).sum();
+        Assertions.assertEquals(initialUnitsCount, unitRepository.count());
+        Assertions.assertEquals(1.0, meterRegistry.counter("apartments.sync.cycles",
+                "community", communityConfig.getCommunityId(), "outcome", "skipped").count());
+        verify(bot, never()).sendMessage(anyLong(), anyString());
+    }
 }
@@ -2,29 +2,54 @@ package com.grishin.apartment.checker.service;
 
 import com.grishin.apartment.checker.TestDataProvider;
 import com.grishin.apartment.checker.config.ApartmentsConfig;
+import com.grishin.apartment.checker.config.ListingConfig;
+import com.grishin.apartment.checker.config.SyncConfig;
 import com.grishin.apartment.checker.dto.AptDTO;
+import com.grishin.apartment.checker.dto.Changeset;
 import com.grishin.apartment.checker.dto.FloorPlanGroupDTO;
+import com.grishin.apartment.checker.dto.InventoryChange;
+import com.grishin.apartment.checker.dto.SyncStats;
 import com.grishin.apartment.checker.storage.*;
 import com.grishin.apartment.checker.storage.entity.FloorPlanGroup;
 import com.grishin.apartment.checker.storage.entity.Unit;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
 import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.scheduling.TaskScheduler;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.test.context.transaction.TestTransaction;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.io.IOException;
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
 
+import static com.grishin.apartment.checker.service.SyncFixtures.*;
+import static java.util.stream.Collectors.toSet;
 import static org.junit.jupiter.api.Assertions.*;
 
-@DataJpaTest(showSql = false)
+@DataJpaTest(showSql = false, properties = "spring.jpa.properties.hibernate.generate_statistics=true")
 @ActiveProfiles("test")
-@Import({DataSyncService.class, UserFilterService.class})
+@Import({DataSyncService.class, UserFilterService.class, AmenityDictionary.class, SubscriptionIndex.class,
+        InventorySnapshotService.class, ListingCache.class, ListingConfig.class, ReferenceDataCache.class,
+        GroupMembershipRepository.class, ListedUnitRepository.class, SyncConfig.class, SimpleMeterRegistry.class})
 public class DataSyncServiceTest {
+    private static final Logger log = LoggerFactory.getLogger(DataSyncServiceTest.class);
 
     @MockitoBean
     ApartmentsFetcherClient client;
@@ -51,6 +76,30 @@ public class DataSyncServiceTest {
     @Autowired
     private UnitAmenityRepository unitAmenityRepository;
 
+    @Autowired
+    private LeasePriceRepository leasePriceRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private SyncConfig syncConfig;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private AmenityDictionary amenityDictionary;
+
+    @Autowired
+    private ReferenceDataCache referenceData;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
     @Test
     public void testProcessApartmentData() throws IOException {
         List<FloorPlanGroupDTO> apartmentDataList = TestDataProvider.getSampleUnits();
@@ -111,4 +160,237 @@ public class DataSyncServiceTest {
             }
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testProcessApartmentData_UnitInSeveralGroupsIsStoredOnce() throws IOException {
+        List<FloorPlanGroupDTO> apartmentDataList = TestDataProvider.getSampleUnits();
+        FloorPlanGroupDTO repeated = new FloorPlanGroupDTO();
+        repeated.setGroupType("featured");
+        repeated.setUnits(apartmentDataList.get(0).getUnits());
+        List<FloorPlanGroupDTO> withRepeats = new ArrayList<>(apartmentDataList);
+        withRepeats.add(repeated);
+
+        SyncStats stats = apartmentService.processApartmentData(withRepeats, null).stats();
+
+        int distinctUnits = NormalizedInventory.of(apartmentDataList).getUnitIds().size();
+        assertEquals(distinctUnits, stats.getAdded());
+        assertEquals(distinctUnits, unitRepository.count());
+        FloorPlanGroup featured = floorPlanGroupRepository.findByGroupType("featured");
+        for (AptDTO aptDTO : repeated.getUnits()) {
+            Unit unit = unitRepository.findById(aptDTO.getObjectID()).orElseThrow();
+            assertEquals(2, unit.getGroups().size());
+            assertTrue(unit.getGroups().contains(featured));
+        }
+    }
+
+    @Test
+    public void testProcessApartmentData_ReadQueriesDoNotGrowWithUnits() throws IOException {
+        List<FloorPlanGroupDTO> setup = TestDataProvider.getInitialApartmentData();
+        List<FloorPlanGroupDTO> update = TestDataProvider.getUpdatedApartmentDataWithNewUnits();
+        String communityId = setup.get(0).getUnits().get(0).getCommunityIDAEM();
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        long setupReads = readsDuring(statistics, entityManager, () -> apartmentService.processApartmentData(setup, communityId));
+        long updateReads = readsDuring(statistics, entityManager, () -> apartmentService.processApartmentData(update, communityId));
+
+        assertEquals(93, unitRepository.count());
+        assertTrue(setupReads <= 10, "Setup cycle issued " + setupReads + " reads");
+        assertTrue(updateReads <= 10, "Update cycle issued " + updateReads + " reads");
+    }
+
+    @Test
+    public void testProcessApartmentData_RemovesDelistedUnitsInBulk() throws IOException {
+        List<FloorPlanGroupDTO> setup = TestDataProvider.getInitialApartmentData();
+        List<FloorPlanGroupDTO> delete = TestDataProvider.getUpdatedApartmentDataWithRemovedUnits();
+        String communityId = setup.get(0).getUnits().get(0).getCommunityIDAEM();
+        Set<String> delisted = new HashSet<>(NormalizedInventory.of(setup).getUnitIds());
+        delisted.removeAll(NormalizedInventory.of(delete).getUnitIds());
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        apartmentService.processApartmentData(setup, communityId);
+        entityManager.flush();
+        entityManager.clear();
+        statistics.clear();
+        SyncStats stats = apartmentService.processApartmentData(delete, communityId).stats();
+        entityManager.flush();
+        // Delisted units are found by an anti-join against the staged listing and removed by bulk deletes, never loaded one by one
+        long lazyFetches = statistics.getEntityFetchCount() + statistics.getCollectionFetchCount();
+        Number staged = (Number) entityManager.getEntityManager().createNativeQuery("select count(*) from listed_units").getSingleResult();
+
+        assertEquals(0, lazyFetches);
+        assertEquals(0, staged.intValue());
+        assertEquals(3, stats.getRemoved());
+        assertEquals(84, unitRepository.count());
+        assertEquals(84, leasePriceRepository.count());
+        assertTrue(delisted.stream().noneMatch(unitRepository::existsById));
+        assertTrue(floorPlanGroupRepository.findAll().stream()
+                .flatMap(group -> group.getUnits().stream())
+                .noneMatch(unit -> delisted.contains(unit.getObjectId())));
+    }
+
+    @Test
+    public void testProcessApartmentData_InsertsAreBatched() {
+        String communityId = "synthetic-community";
+        SessionFactoryImplementor sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        int batchSize = sessionFactory.getSessionFactoryOptions().getJdbcBatchSize();
+        Statistics statistics = sessionFactory.getStatistics();
+
+        // Before: what the session runs with when hibernate.jdbc.batch_size is not set
+        entityManager.getEntityManager().unwrap(Session.class).setJdbcBatchSize(sessionFactory.getJdbcServices().getDialect().getDefaultStatementBatchSize());
+        long before = statementsDuring(statistics, entityManager, () -> apartmentService.processApartmentData(syntheticCommunity(communityId, 1000), communityId));
+        long insertsBefore = statistics.getEntityInsertCount();
+        TestTransaction.end();
+        TestTransaction.start();
+        long after = statementsDuring(statistics, entityManager, () -> apartmentService.processApartmentData(syntheticCommunity(communityId, 1000), communityId));
+        long inserts = statistics.getEntityInsertCount();
+
+        String report = "statements per sync of %d inserted rows: %d without hibernate.jdbc.batch_size, %d with batch size %d"
+                .formatted(inserts, before, after, batchSize);
+        log.info(report);
+        assertEquals(insertsBefore, inserts, report);
+        assertTrue(after * 4 < before, report);
+        // Inserts go out batchSize rows per statement and sequence ids are fetched a block of the same size at a
+        // time, the rest is a fixed number of reads and partial batches
+        assertTrue(after <= 2 * inserts / batchSize + 25, report);
+    }
+
+    @Test
+    public void testProcessApartmentData_RepeatedCycleWritesOnlyTheDelta() throws IOException {
+        List<FloorPlanGroupDTO> setup = TestDataProvider.getInitialApartmentData();
+        String communityId = setup.get(0).getUnits().get(0).getCommunityIDAEM();
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        assertEquals(87, apartmentService.processApartmentData(setup, communityId).addedUnitIds().size());
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics.clear();
+        Changeset quiet = apartmentService.processApartmentData(TestDataProvider.getInitialApartmentData(), communityId);
+        entityManager.flush();
+        entityManager.clear();
+        assertTrue(quiet.isEmpty(), "Unexpected changes: " + quiet.changes());
+        assertEquals(0, statistics.getEntityInsertCount() + statistics.getEntityUpdateCount() + statistics.getEntityDeleteCount());
+        // Matching content hashes skip the unit before any entity is loaded
+        assertEquals(0, statistics.getEntityLoadCount());
+
+        List<FloorPlanGroupDTO> repriced = TestDataProvider.getInitialApartmentData();
+        AptDTO apt = repriced.get(0).getUnits().get(0);
+        int previousPrice = apt.getUnitEarliestAvailable().getPrice();
+        apt.getUnitEarliestAvailable().setPrice(previousPrice + 100);
+        statistics.clear();
+        Changeset changeset = apartmentService.processApartmentData(repriced, communityId);
+        entityManager.flush();
+
+        assertEquals(List.of(new InventoryChange.PriceChanged(apt.getObjectID(), previousPrice, previousPrice + 100)), changeset.changes());
+        // The lease price and the unit's content hash
+        assertEquals(2, statistics.getEntityUpdateCount());
+        assertEquals(previousPrice + 100, unitRepository.findById(apt.getObjectID()).orElseThrow().getUnitEarliestAvailable().getPrice());
+    }
+
+    @Test
+    public void testProcessApartmentData_ReconcilesGroupMembershipAgainstJoinTables() throws IOException {
+        List<FloorPlanGroupDTO> setup = TestDataProvider.getInitialApartmentData();
+        String communityId = setup.get(0).getUnits().get(0).getCommunityIDAEM();
+        AptDTO moved = setup.get(0).getUnits().get(0);
+        FloorPlanGroupDTO featured = new FloorPlanGroupDTO();
+        featured.setGroupType("featured");
+        featured.setUnits(List.of(moved));
+        List<FloorPlanGroupDTO> withFeatured = new ArrayList<>(setup);
+        withFeatured.add(featured);
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        apartmentService.processApartmentData(withFeatured, communityId);
+        entityManager.flush();
+        entityManager.clear();
+        statistics.clear();
+        Changeset changeset = apartmentService.processApartmentData(TestDataProvider.getInitialApartmentData(), communityId);
+        entityManager.flush();
+        // Neither the groups' unit and floor plan sets nor the unit's group set is initialized
+        long collectionFetches = statistics.getCollectionFetchCount();
+        entityManager.clear();
+
+        assertEquals(List.of(new InventoryChange.AttributesChanged(moved.getObjectID(), Set.of("groups"))), changeset.changes());
+        assertEquals(0, collectionFetches);
+        Unit unit = unitRepository.findById(moved.getObjectID()).orElseThrow();
+        assertEquals(Set.of("floorPlanImage"), unit.getGroups().stream().map(FloorPlanGroup::getGroupType).collect(toSet()));
+        assertTrue(floorPlanGroupRepository.findByGroupType("featured").getFloorPlans().contains(unit.getFloorPlan()));
+    }
+
+    @Test
+    public void testProcessApartmentStream_DefersUnitsWhoseGroupsAreNotFinal() throws IOException {
+        List<FloorPlanGroupDTO> setup = TestDataProvider.getInitialApartmentData();
+        String communityId = setup.get(0).getUnits().get(0).getCommunityIDAEM();
+        AptDTO featured = setup.get(0).getUnits().get(0);
+        FloorPlanGroupDTO featuredGroup = new FloorPlanGroupDTO();
+        featuredGroup.setGroupType("featured");
+        featuredGroup.setUnits(List.of(featured));
+        List<FloorPlanGroupDTO> withFeatured = new ArrayList<>(setup);
+        withFeatured.add(featuredGroup);
+        apartmentService.processApartmentData(withFeatured, communityId);
+        entityManager.flush();
+        entityManager.clear();
+        int chunkSize = syncConfig.getChunkSize();
+        syncConfig.setChunkSize(10);
+        try {
+            // "featured" only arrives after the unit's first batch went to sync
+            Changeset changeset = apartmentService.processApartmentStream(communityId, consumer -> {
+                for (FloorPlanGroupDTO group : withFeatured)
+                    group.getUnits().forEach(unit -> consumer.accept(group.getGroupType(), unit));
+            });
+            entityManager.flush();
+            entityManager.clear();
+
+            assertTrue(changeset.isEmpty(), "Unexpected changes: " + changeset.changes());
+            Unit unit = unitRepository.findById(featured.getObjectID()).orElseThrow();
+            assertEquals(Set.of("floorPlanImage", "featured"), unit.getGroups().stream().map(FloorPlanGroup::getGroupType).collect(toSet()));
+            assertEquals(87, unitRepository.count());
+        } finally {
+            syncConfig.setChunkSize(chunkSize);
+        }
+    }
+
+    /**
+     * Runs outside the test transaction, so every chunk really commits and clears its persistence context.
+     */
+    @Test
+    @Tag("slow")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void testProcessApartmentData_ChunkedSyncKeepsPersistenceContextFlat() {
+        String communityId = "synthetic-community";
+        int chunkSize = syncConfig.getChunkSize();
+        List<FloorPlanGroupDTO> community = syntheticCommunity(communityId, 50_000);
+        DistributionSummary managedPerChunk = meterRegistry.summary("apartments.sync.chunk.entities");
+        long chunksBefore = managedPerChunk.count();
+        try {
+            Changeset changeset = apartmentService.processApartmentData(community, communityId);
+
+            assertEquals(50_000, changeset.addedUnitIds().size());
+            assertEquals(50_000, unitRepository.count());
+            assertEquals(50_000 / chunkSize, managedPerChunk.count() - chunksBefore);
+            // A unit and its lease price per row of the chunk, plus a handful of shared rows: no growth with community size
+            assertTrue(managedPerChunk.max() <= 2 * chunkSize + 100, "Peak managed entities per chunk: " + managedPerChunk.max());
+
+            // Every 50th unit is delisted, spread over all the chunks committed above
+            List<AptDTO> units = community.get(0).getUnits();
+            Set<String> delisted = new HashSet<>();
+            for (int i = 0; i < units.size(); i += 50)
+                delisted.add(units.get(i).getObjectID());
+            units.removeIf(unit -> delisted.contains(unit.getObjectID()));
+            Changeset removal = apartmentService.processApartmentData(community, communityId);
+
+            assertEquals(delisted, Set.copyOf(removal.removedUnitIds()));
+            assertEquals(delisted.size(), removal.changes().size());
+            assertEquals(50_000 - delisted.size(), unitRepository.count());
+        } finally {
+            deleteCommitted();
+        }
+    }
+
+    private void deleteCommitted() {
+        for (String table : List.of("unit_id_group_mappings", "floor_plan_group_mappings", "unit_amenity_mappings",
+                "lease_prices", "units", "unit_amenities", "floor_plans", "floor_plan_groups", "communities"))
+            jdbcTemplate.execute("delete from " + table);
+        referenceData.evictAll();
+        amenityDictionary.load();
+    }
+}
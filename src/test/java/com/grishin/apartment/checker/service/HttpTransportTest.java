@@ -0,0 +1,106 @@
+package com.grishin.apartment.checker.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.grishin.apartment.checker.StubApartmentsServer;
+import com.grishin.apartment.checker.TestDataProvider;
+import com.grishin.apartment.checker.config.ApartmentsConfig;
+import com.grishin.apartment.checker.config.HttpClientConfig;
+import com.grishin.apartment.checker.dto.AptDTO;
+import com.grishin.apartment.checker.dto.FloorPlanGroupDTO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HttpTransportTest {
+
+    private StubApartmentsServer server;
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = StubApartmentsServer.start();
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testFetchApartments_DecodesGzipResponse() throws Exception {
+        server.serving("apartment-update.json").encodedWith("gzip");
+
+        List<FloorPlanGroupDTO> groups = client(config()).fetchApartments("community", 10);
+
+        assertEquals(TestDataProvider.getUpdatedApartmentDataWithNewUnits(), groups);
+        assertTrue(server.requests().get(0).acceptEncoding().contains("gzip"));
+    }
+
+    @Test
+    void testStreamApartments_DecodesDeflateResponse() throws Exception {
+        server.serving("apartment-delete.json").encodedWith("deflate");
+
+        List<AptDTO> units = new ArrayList<>();
+        client(config()).streamApartments("community", 10, (groupType, unit) -> units.add(unit));
+
+        List<AptDTO> expected = TestDataProvider.getUpdatedApartmentDataWithRemovedUnits().stream()
+                .flatMap(group -> group.getUnits().stream())
+                .toList();
+        assertEquals(expected, units);
+    }
+
+    @Test
+    void testFetchApartments_PlainResponseWhenCompressionDisabled() throws Exception {
+        server.encodedWith("gzip");
+        HttpClientConfig config = config();
+        config.setCompression(false);
+
+        List<FloorPlanGroupDTO> groups = client(config).fetchApartments("community", 10);
+
+        assertEquals(TestDataProvider.getInitialApartmentData(), groups);
+        assertNull(server.requests().get(0).acceptEncoding());
+    }
+
+    @Test
+    void testFetchApartments_ReusesPooledConnection() {
+        HttpClientConfig config = config();
+        config.setHttp2(false);
+        IrvineCompanyClient client = client(config);
+
+        client.fetchApartments("community", 10);
+        client.fetchApartments("community", 10);
+
+        assertEquals(2, server.requests().size());
+        assertEquals(server.requests().get(0).clientPort(), server.requests().get(1).clientPort());
+    }
+
+    @Test
+    void testFetchApartments_FailsOnReadTimeout() {
+        server.delayedBy(Duration.ofSeconds(2));
+        HttpClientConfig config = config();
+        config.setReadTimeout(Duration.ofMillis(200));
+
+        assertThrows(ResourceAccessException.class, () -> client(config).fetchApartments("community", 10));
+    }
+
+    private HttpClientConfig config() {
+        return new HttpClientConfig();
+    }
+
+    private IrvineCompanyClient client(HttpClientConfig config) {
+        ApartmentsConfig apartmentsConfig = new ApartmentsConfig();
+        apartmentsConfig.setUrl(server.url());
+        return new IrvineCompanyClient(HttpTransport.restTemplate(config, executor), apartmentsConfig, new ObjectMapper());
+    }
+}
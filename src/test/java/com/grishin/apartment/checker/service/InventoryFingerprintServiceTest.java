@@ -0,0 +1,44 @@
+package com.grishin.apartment.checker.service;
+
+import com.grishin.apartment.checker.TestDataProvider;
+import com.grishin.apartment.checker.storage.CommunityFingerprintRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class InventoryFingerprintServiceTest {
+
+    private CommunityFingerprintRepository repository;
+    private InventoryFingerprintService service;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(CommunityFingerprintRepository.class);
+        when(repository.findById("community")).thenReturn(Optional.empty());
+        service = new InventoryFingerprintService(repository, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void testForget_DeletesOnlyWhileAFingerprintMayBeStored() throws IOException {
+        service.forget("community");
+        service.forget("community");
+        verify(repository, times(1)).deleteById("community");
+
+        // Nothing is stored any more, so there is nothing to look up either
+        InventoryFingerprint fingerprint = InventoryFingerprint.of(TestDataProvider.getInitialApartmentData());
+        assertFalse(service.isUnchanged("community", fingerprint));
+        verify(repository, never()).findById("community");
+
+        service.record("community", fingerprint);
+        service.forget("community");
+        verify(repository).save(any());
+        verify(repository, times(2)).deleteById("community");
+    }
+}
@@ -0,0 +1,171 @@
+package com.grishin.apartment.checker.service;
+
+import com.grishin.apartment.checker.TestDataProvider;
+import com.grishin.apartment.checker.config.ApartmentsConfig;
+import com.grishin.apartment.checker.config.ListingConfig;
+import com.grishin.apartment.checker.config.SyncConfig;
+import com.grishin.apartment.checker.dto.AmenityMask;
+import com.grishin.apartment.checker.dto.ApartmentFilter;
+import com.grishin.apartment.checker.dto.FloorPlanGroupDTO;
+import com.grishin.apartment.checker.dto.MatchableUnit;
+import com.grishin.apartment.checker.dto.UnitSort;
+import com.grishin.apartment.checker.storage.GroupMembershipRepository;
+import com.grishin.apartment.checker.storage.ListedUnitRepository;
+import com.grishin.apartment.checker.storage.UnitRepository;
+import com.grishin.apartment.checker.storage.entity.Unit;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.io.IOException;
+import java.util.*;
+
+import static com.grishin.apartment.checker.service.SyncFixtures.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(showSql = false, properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@ActiveProfiles("test")
+@Import({DataSyncService.class, UserFilterService.class, AmenityDictionary.class, SubscriptionIndex.class,
+        InventorySnapshotService.class, ListingCache.class, ListingConfig.class, ReferenceDataCache.class,
+        GroupMembershipRepository.class, ListedUnitRepository.class, SyncConfig.class, SimpleMeterRegistry.class})
+public class InventorySnapshotTest {
+
+    @MockitoBean
+    ApartmentsFetcherClient client;
+    @MockitoBean
+    ApartmentsConfig config;
+    @MockitoBean
+    private TaskScheduler taskScheduler;
+
+    @Autowired
+    private DataSyncService apartmentService;
+
+    @Autowired
+    private InventorySnapshotService inventorySnapshots;
+
+    @Autowired
+    private UnitRepository unitRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    public void testPages_WalkEveryMatchInOrder() throws IOException {
+        List<FloorPlanGroupDTO> setup = TestDataProvider.getInitialApartmentData();
+        String communityId = setup.get(0).getUnits().get(0).getCommunityIDAEM();
+        apartmentService.processApartmentData(setup, communityId);
+        entityManager.flush();
+        entityManager.clear();
+        InventorySnapshot snapshot = InventorySnapshot.of(inventorySnapshots.loadUnits(NormalizedInventory.of(setup).getUnitIds()));
+        ApartmentFilter filter = new ApartmentFilter();
+        filter.setCommunityId(communityId);
+        List<MatchableUnit> matching = snapshot.filter(filter, AmenityMask.NONE);
+        Comparator<Integer> nullsLast = Comparator.nullsLast(Comparator.naturalOrder());
+
+        for (UnitSort sort : UnitSort.values()) {
+            Comparator<MatchableUnit> expectedOrder = switch (sort) {
+                case PRICE -> Comparator.comparing(MatchableUnit::price, nullsLast);
+                case AVAILABLE_DATE -> Comparator.comparing(MatchableUnit::availableDate, Comparator.nullsLast(Comparator.naturalOrder()));
+                case PRICE_PER_SQFT -> Comparator.comparing((MatchableUnit unit) -> unit.price() != null && unit.message().getSquareFeet() != null
+                        && unit.message().getSquareFeet() > 0 ? unit.price() * 100 / unit.message().getSquareFeet() : null, nullsLast);
+            };
+            List<String> expected = matching.stream()
+                    .sorted(expectedOrder.thenComparing(MatchableUnit::objectId))
+                    .map(MatchableUnit::objectId)
+                    .toList();
+
+            List<String> walked = new ArrayList<>();
+            InventorySnapshot.Page page = snapshot.page(filter, AmenityMask.NONE, sort, null, 3);
+            while (true) {
+                assertEquals(matching.size(), page.total());
+                page.units().forEach(unit -> walked.add(unit.objectId()));
+                if (page.next() == null)
+                    break;
+                page = snapshot.page(filter, AmenityMask.NONE, sort, page.next(), 3);
+            }
+            assertEquals(expected, walked, "Sort " + sort);
+        }
+    }
+
+    @Test
+    public void testPatch_MatchesAFreshBuild() {
+        List<MatchableUnit> units = new ArrayList<>();
+        for (int i = 0; i < 30; i++)
+            units.add(unit("unit-" + i, "community-" + i % 3, 2000 + i));
+        InventorySnapshot snapshot = InventorySnapshot.of(units);
+        // A repriced unit, a unit moved to another community, a dropped unit and a unit in a new community
+        List<MatchableUnit> loaded = List.of(unit("unit-4", "community-1", 9000), unit("unit-5", "community-0", 2005),
+                unit("unit-30", "community-9", 3000));
+
+        InventorySnapshot patched = snapshot.patch(List.of("unit-7"), loaded);
+
+        Map<String, MatchableUnit> expected = new HashMap<>();
+        units.forEach(unit -> expected.put(unit.objectId(), unit));
+        expected.remove("unit-7");
+        loaded.forEach(unit -> expected.put(unit.objectId(), unit));
+        InventorySnapshot rebuilt = InventorySnapshot.of(expected.values());
+        assertEquals(snapshot.epoch() + 1, patched.epoch());
+        assertEquals(4, patched.communities());
+        assertEquals(rebuilt.filter(new ApartmentFilter(), AmenityMask.NONE), patched.filter(new ApartmentFilter(), AmenityMask.NONE));
+        for (String communityId : List.of("community-0", "community-1", "community-2", "community-9")) {
+            ApartmentFilter filter = new ApartmentFilter();
+            filter.setCommunityId(communityId);
+            assertEquals(rebuilt.filter(filter, AmenityMask.NONE), patched.filter(filter, AmenityMask.NONE), communityId);
+        }
+    }
+
+    @Test
+    public void testLoadUnits_QueryCountIndependentOfUnitCount() {
+        String communityId = "synthetic-community";
+        apartmentService.processApartmentData(syntheticCommunity(communityId, 900), communityId);
+        entityManager.flush();
+        entityManager.clear();
+        List<String> ids = unitRepository.findAllObjectIds();
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        long fewReads = readsDuring(statistics, entityManager, () -> assertEquals(10, inventorySnapshots.loadUnits(ids.subList(0, 10)).size()));
+        long manyReads = readsDuring(statistics, entityManager, () -> assertEquals(900, inventorySnapshots.loadUnits(ids).size()));
+
+        // One row query and one amenity query, no lazy loads per unit
+        assertEquals(2, fewReads);
+        assertEquals(fewReads, manyReads);
+    }
+
+    @Test
+    public void testLoadUnits_ProjectionMatchesEntities() throws IOException {
+        List<FloorPlanGroupDTO> setup = TestDataProvider.getInitialApartmentData();
+        String communityId = setup.get(0).getUnits().get(0).getCommunityIDAEM();
+        apartmentService.processApartmentData(setup, communityId);
+        entityManager.flush();
+        entityManager.clear();
+        Set<String> ids = NormalizedInventory.of(setup).getUnitIds();
+
+        Map<String, MatchableUnit> expected = new HashMap<>();
+        for (Unit unit : unitRepository.findWithDetailsByObjectIdIn(ids)) {
+            MatchableUnit matchable = MatchableUnit.fromEntity(unit);
+            matchable.message().setAmenityNames(matchable.message().getAmenityNames().stream().sorted().toList());
+            expected.put(unit.getObjectId(), matchable);
+        }
+        entityManager.clear();
+        Map<String, MatchableUnit> projected = new HashMap<>();
+        inventorySnapshots.loadUnits(ids).forEach(unit -> projected.put(unit.objectId(), unit));
+
+        assertEquals(expected, projected);
+    }
+
+    private static MatchableUnit unit(String objectId, String communityId, int price) {
+        return new MatchableUnit(objectId, communityId, false, 1, 1, price, 1, "Plan", Set.of(), 0, null, null);
+    }
+}
@@ -0,0 +1,63 @@
+package com.grishin.apartment.checker.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.grishin.apartment.checker.TestDataProvider;
+import com.grishin.apartment.checker.config.ApartmentsConfig;
+import com.grishin.apartment.checker.dto.AptDTO;
+import com.grishin.apartment.checker.dto.FloorPlanGroupDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.method;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+public class IrvineCompanyClientTest {
+
+    private static final String URL = "http://localhost/units/rank";
+
+    private MockRestServiceServer server;
+    private IrvineCompanyClient client;
+
+    @BeforeEach
+    void setUp() {
+        RestTemplate restTemplate = new RestTemplate();
+        server = MockRestServiceServer.bindTo(restTemplate).build();
+        ApartmentsConfig config = new ApartmentsConfig();
+        config.setUrl(URL);
+        client = new IrvineCompanyClient(restTemplate, config, new ObjectMapper());
+    }
+
+    @Test
+    void testStreamApartments_EmitsSameUnitsAsFullDeserialization() throws Exception {
+        server.expect(requestTo(URL))
+                .andExpect(method(HttpMethod.POST))
+                .andRespond(withSuccess(new ClassPathResource("apartment-setup.json"), MediaType.APPLICATION_JSON));
+
+        List<String> streamedGroupTypes = new ArrayList<>();
+        List<AptDTO> streamedUnits = new ArrayList<>();
+        client.streamApartments("11584d39-2644-4b8e-8548-7c2a126c0570", 10, (groupType, unit) -> {
+            streamedGroupTypes.add(groupType);
+            streamedUnits.add(unit);
+        });
+
+        List<FloorPlanGroupDTO> expectedGroups = TestDataProvider.getInitialApartmentData();
+        List<AptDTO> expectedUnits = expectedGroups.stream().flatMap(group -> group.getUnits().stream()).toList();
+        List<String> expectedGroupTypes = expectedGroups.stream()
+                .flatMap(group -> group.getUnits().stream().map(unit -> group.getGroupType()))
+                .toList();
+
+        assertEquals(expectedUnits, streamedUnits);
+        assertEquals(expectedGroupTypes, streamedGroupTypes);
+        server.verify();
+    }
+}
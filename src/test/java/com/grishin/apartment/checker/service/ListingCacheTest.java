@@ -0,0 +1,117 @@
+package com.grishin.apartment.checker.service;
+
+import com.grishin.apartment.checker.config.ListingConfig;
+import com.grishin.apartment.checker.dto.AmenityMask;
+import com.grishin.apartment.checker.dto.ApartmentFilter;
+import com.grishin.apartment.checker.dto.MatchableUnit;
+import com.grishin.apartment.checker.dto.UnitSort;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ListingCacheTest {
+    private static final Instant NOW = Instant.parse("2025-03-01T10:00:00Z");
+
+    private MeterRegistry meterRegistry;
+    private ListingCache cache;
+    private List<Integer> limits;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new ListingCache(new ListingConfig(Duration.ofMinutes(10), 2), meterRegistry);
+        limits = new ArrayList<>();
+    }
+
+    @Test
+    void testPageFlips_RenderFromCachedIds() {
+        ListingCache.Key key = new ListingCache.Key(1, 10, UnitSort.PRICE, 1);
+        ListingCache.Loader loader = loader("a", "b", "c", "d", "e", "f", "g");
+
+        assertEquals(new ListingCache.Slice(List.of("a", "b"), 0, 7), cache.get(key, 0, 2, loader, NOW));
+        assertEquals(new ListingCache.Slice(List.of("c", "d"), 1, 7), cache.get(key, 1, 2, loader, NOW.plusSeconds(60)));
+        assertEquals(new ListingCache.Slice(List.of("a", "b"), 0, 7), cache.get(key, 0, 2, loader, NOW.plusSeconds(90)));
+        // Past the ids fetched so far, the listing continues from its cursor instead of starting over
+        assertEquals(new ListingCache.Slice(List.of("e", "f"), 2, 7), cache.get(key, 2, 2, loader, NOW.plusSeconds(120)));
+        assertEquals(new ListingCache.Slice(List.of("g"), 3, 7), cache.get(key, 3, 2, loader, NOW.plusSeconds(180)));
+
+        // Each miss scans for the requested page and the one after it, never for the whole listing
+        assertEquals(List.of(4, 4), limits);
+        assertEquals(3.0, meterRegistry.counter("apartments.listing.cache", "result", "hit").count());
+        assertEquals(2.0, meterRegistry.counter("apartments.listing.cache", "result", "miss").count());
+    }
+
+    @Test
+    void testPagePastTheEnd_ShowsTheLastPage() {
+        ListingCache.Key key = new ListingCache.Key(1, 10, UnitSort.PRICE, 1);
+        ListingCache.Loader loader = loader("a", "b", "c");
+
+        assertEquals(new ListingCache.Slice(List.of("c"), 1, 3), cache.get(key, 5, 2, loader, NOW));
+        assertEquals(new ListingCache.Slice(List.of("c"), 1, 3), cache.get(key, 9, 2, loader, NOW));
+        assertEquals(new ListingCache.Slice(List.of(), 0, 0), cache.get(new ListingCache.Key(1, 11, UnitSort.PRICE, 1), 0, 2, loader(), NOW));
+        assertEquals(2, limits.size());
+    }
+
+    @Test
+    void testNewEpoch_DropsEveryListing() {
+        cache.get(new ListingCache.Key(1, 10, UnitSort.PRICE, 1), 0, 2, loader("a"), NOW);
+        cache.get(new ListingCache.Key(2, 20, UnitSort.PRICE, 1), 0, 2, loader("b"), NOW);
+
+        assertEquals(List.of("c"), cache.get(new ListingCache.Key(1, 10, UnitSort.PRICE, 2), 0, 2, loader("c"), NOW).objectIds());
+        assertEquals(1, cache.size());
+        // A lookup still holding the previous snapshot is answered but not cached
+        assertEquals(List.of("d"), cache.get(new ListingCache.Key(2, 20, UnitSort.PRICE, 1), 0, 2, loader("d"), NOW).objectIds());
+        assertEquals(1, cache.size());
+        assertEquals(4, limits.size());
+    }
+
+    @Test
+    void testTtlAndSize_EvictListings() {
+        ListingCache.Key first = new ListingCache.Key(1, 10, UnitSort.PRICE, 1);
+        cache.get(first, 0, 2, loader("a"), NOW);
+        assertEquals(List.of("b"), cache.get(first, 0, 2, loader("b"), NOW.plus(Duration.ofMinutes(10))).objectIds());
+
+        cache.get(new ListingCache.Key(1, 10, UnitSort.AVAILABLE_DATE, 1), 0, 2, loader("c"), NOW);
+        cache.get(first, 0, 2, loader("x"), NOW);
+        cache.get(new ListingCache.Key(2, 20, UnitSort.PRICE, 1), 0, 2, loader("d"), NOW);
+
+        // The least recently used listing went first
+        assertEquals(2, cache.size());
+        assertEquals(List.of("b"), cache.get(first, 0, 2, loader("x"), NOW).objectIds());
+        assertEquals(List.of("e"), cache.get(new ListingCache.Key(1, 10, UnitSort.AVAILABLE_DATE, 1), 0, 2, loader("e"), NOW).objectIds());
+    }
+
+    @Test
+    void testEvictFilter_DropsItsListings() {
+        cache.get(new ListingCache.Key(1, 10, UnitSort.PRICE, 1), 0, 2, loader("a"), NOW);
+        cache.get(new ListingCache.Key(1, 11, UnitSort.PRICE, 1), 0, 2, loader("b"), NOW);
+
+        cache.evictFilter(10);
+
+        assertEquals(1, cache.size());
+        assertEquals(List.of("c"), cache.get(new ListingCache.Key(1, 10, UnitSort.PRICE, 1), 0, 2, loader("c"), NOW).objectIds());
+    }
+
+    /**
+     * Keyset pages over a snapshot of the given units, priced in the given order.
+     */
+    private ListingCache.Loader loader(String... objectIds) {
+        List<MatchableUnit> units = new ArrayList<>();
+        for (int i = 0; i < objectIds.length; i++)
+            units.add(new MatchableUnit(objectIds[i], "community", false, 1, 1, 1000 + i, 1, "Plan", Set.of(), 0, null, null));
+        InventorySnapshot snapshot = InventorySnapshot.of(units);
+        return (after, limit) -> {
+            limits.add(limit);
+            return snapshot.page(new ApartmentFilter(), AmenityMask.NONE, UnitSort.PRICE, after, limit);
+        };
+    }
+}
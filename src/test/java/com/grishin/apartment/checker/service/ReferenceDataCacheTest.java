@@ -0,0 +1,118 @@
+package com.grishin.apartment.checker.service;
+
+import com.grishin.apartment.checker.config.SyncConfig;
+import com.grishin.apartment.checker.storage.CommunityRepository;
+import com.grishin.apartment.checker.storage.FloorPlanGroupRepository;
+import com.grishin.apartment.checker.storage.FloorPlanRepository;
+import com.grishin.apartment.checker.storage.entity.Community;
+import com.grishin.apartment.checker.storage.entity.FloorPlanGroup;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class ReferenceDataCacheTest {
+
+    private CommunityRepository communityRepository;
+    private FloorPlanGroupRepository floorPlanGroupRepository;
+    private EntityManager entityManager;
+    private MeterRegistry meterRegistry;
+    private ReferenceDataCache cache;
+
+    @BeforeEach
+    void setUp() {
+        communityRepository = mock(CommunityRepository.class);
+        floorPlanGroupRepository = mock(FloorPlanGroupRepository.class);
+        entityManager = mock(EntityManager.class);
+        when(entityManager.getReference(eq(Community.class), any()))
+                .thenAnswer(invocation -> community(invocation.getArgument(1)));
+        when(entityManager.getReference(eq(FloorPlanGroup.class), any()))
+                .thenAnswer(invocation -> group(invocation.getArgument(1), null));
+        meterRegistry = new SimpleMeterRegistry();
+        SyncConfig syncConfig = new SyncConfig();
+        syncConfig.setReferenceCacheSize(2);
+        cache = new ReferenceDataCache(communityRepository, mock(FloorPlanRepository.class), floorPlanGroupRepository,
+                entityManager, syncConfig, meterRegistry);
+        cache.registerMetrics();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive())
+            TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    @Test
+    void testSecondLookup_UsesReferenceWithoutQuery() {
+        when(communityRepository.findAllById(any())).thenReturn(List.of(community("a"), community("b")));
+
+        assertEquals(Set.of("a", "b"), cache.communities(List.of("a", "b", "missing")).keySet());
+        Map<String, Community> cached = cache.communities(List.of("a", "b"));
+
+        assertEquals("a", cached.get("a").getId());
+        verify(communityRepository, times(1)).findAllById(any());
+        verify(entityManager, times(2)).getReference(eq(Community.class), any());
+        assertEquals(2.0, meterRegistry.counter("apartments.reference.cache", "kind", "community", "result", "hit").count());
+        assertEquals(3.0, meterRegistry.counter("apartments.reference.cache", "kind", "community", "result", "miss").count());
+        assertEquals(0.4, meterRegistry.get("apartments.reference.cache.hit.ratio").tag("kind", "community").gauge().value(), 1e-9);
+    }
+
+    @Test
+    void testGroups_CachedByGroupType() {
+        when(floorPlanGroupRepository.findByGroupTypeIn(any())).thenReturn(List.of(group(7L, "featured")));
+
+        cache.groups(List.of("featured"));
+        FloorPlanGroup group = cache.groups(List.of("featured")).get("featured");
+
+        assertEquals(7L, group.getGroupId());
+        verify(floorPlanGroupRepository, times(1)).findByGroupTypeIn(any());
+    }
+
+    @Test
+    void testRegister_WaitsForCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        cache.registerCommunity(community("a"));
+        TransactionSynchronizationManager.clearSynchronization();
+
+        cache.communities(List.of("a"));
+
+        verify(communityRepository, times(1)).findAllById(any());
+    }
+
+    @Test
+    void testEvictAllAndSizeBound_ForceQueries() {
+        cache.registerCommunity(community("a"));
+        cache.registerCommunity(community("b"));
+        cache.registerCommunity(community("c"));
+
+        cache.communities(List.of("a"));
+        verify(communityRepository, times(1)).findAllById(List.of("a"));
+
+        cache.evictAll();
+        cache.communities(List.of("c"));
+        verify(communityRepository, times(1)).findAllById(List.of("c"));
+    }
+
+    private static Community community(Object id) {
+        Community community = new Community();
+        community.setId((String) id);
+        return community;
+    }
+
+    private static FloorPlanGroup group(Object groupId, String groupType) {
+        return new FloorPlanGroup((Long) groupId, groupType, new HashSet<>(), new HashSet<>());
+    }
+}
@@ -0,0 +1,155 @@
+package com.grishin.apartment.checker.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.grishin.apartment.checker.StubApartmentsServer;
+import com.grishin.apartment.checker.TestDataProvider;
+import com.grishin.apartment.checker.config.ApartmentsConfig;
+import com.grishin.apartment.checker.config.FetchConfig;
+import com.grishin.apartment.checker.config.HttpClientConfig;
+import com.grishin.apartment.checker.config.ResilienceConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ResilientApartmentsFetcherClientTest {
+
+    private StubApartmentsServer server;
+    private ExecutorService executor;
+    private MeterRegistry meterRegistry;
+    private ResilienceConfig config;
+    private FetchConfig fetchConfig;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = StubApartmentsServer.start();
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        meterRegistry = new SimpleMeterRegistry();
+        config = new ResilienceConfig();
+        config.setInitialBackoff(Duration.ofMillis(10));
+        config.setMaxBackoff(Duration.ofMillis(50));
+        fetchConfig = new FetchConfig();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testFetchApartments_RetriesTransientFailures() throws Exception {
+        server.failNext(2, 503);
+
+        assertEquals(TestDataProvider.getInitialApartmentData(), client().fetchApartments("community", 10));
+        assertEquals(3, server.requests().size());
+        assertEquals(2, meterRegistry.counter("apartments.fetch.retries", "community", "community").count());
+    }
+
+    @Test
+    void testFetchApartments_OpensCircuitAfterRepeatedFailures() {
+        config.setMaxAttempts(1);
+        config.setFailureThreshold(2);
+        server.failNext(10, 503);
+        ResilientApartmentsFetcherClient client = client();
+
+        assertThrows(HttpServerErrorException.class, () -> client.fetchApartments("community", 10));
+        assertThrows(HttpServerErrorException.class, () -> client.fetchApartments("community", 10));
+        assertThrows(CircuitOpenException.class, () -> client.fetchApartments("community", 10));
+
+        assertEquals(2, server.requests().size());
+        assertEquals(2, meterRegistry.get("apartments.fetch.circuit.state").gauge().value());
+        assertEquals(1, meterRegistry.counter("apartments.fetch.circuit.rejected", "community", "community").count());
+    }
+
+    @Test
+    void testFetchApartments_ClientErrorsDoNotOpenCircuit() {
+        config.setMaxAttempts(1);
+        config.setFailureThreshold(1);
+        server.failNext(2, 404);
+        ResilientApartmentsFetcherClient client = client();
+
+        assertThrows(HttpClientErrorException.NotFound.class, () -> client.fetchApartments("community", 10));
+        assertThrows(HttpClientErrorException.NotFound.class, () -> client.fetchApartments("community", 10));
+
+        assertEquals(2, server.requests().size());
+        assertEquals(0, meterRegistry.get("apartments.fetch.circuit.state").gauge().value());
+    }
+
+    @Test
+    void testFetchApartments_RetriesStopAtFetchTimeout() {
+        config.setMaxAttempts(100);
+        config.setInitialBackoff(Duration.ofMillis(40));
+        config.setMaxBackoff(Duration.ofMillis(40));
+        fetchConfig.setTimeout(Duration.ofMillis(200));
+        server.failNext(100, 503);
+        ResilientApartmentsFetcherClient client = client();
+
+        long start = System.nanoTime();
+        assertThrows(HttpServerErrorException.class, () -> client.fetchApartments("community", 10));
+
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).compareTo(Duration.ofSeconds(2)) < 0);
+        assertTrue(server.requests().size() < 100);
+    }
+
+    @Test
+    void testFetchApartments_CircuitIsPerCommunity() throws Exception {
+        config.setMaxAttempts(1);
+        config.setFailureThreshold(1);
+        server.failNext(1, 503);
+        ResilientApartmentsFetcherClient client = client();
+
+        assertThrows(HttpServerErrorException.class, () -> client.fetchApartments("broken", 10));
+        assertThrows(CircuitOpenException.class, () -> client.fetchApartments("broken", 10));
+        assertEquals(TestDataProvider.getInitialApartmentData(), client.fetchApartments("healthy", 10));
+    }
+
+    @Test
+    void testFetchApartments_HedgesSlowRequest() throws Exception {
+        config.setHedging(true);
+        config.setHedgingMinSamples(5);
+        ResilientApartmentsFetcherClient client = client();
+        for (int i = 0; i < 5; i++)
+            client.fetchApartments("community", 10);
+
+        server.delayNext(Duration.ofSeconds(5));
+        long start = System.nanoTime();
+        assertEquals(TestDataProvider.getInitialApartmentData(), client.fetchApartments("community", 10));
+
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).compareTo(Duration.ofSeconds(5)) < 0);
+        assertEquals(1, meterRegistry.counter("apartments.fetch.hedged", "community", "community").count());
+    }
+
+    @Test
+    void testFetchApartments_HedgesAgainstOwnCommunityLatency() throws Exception {
+        config.setHedging(true);
+        config.setHedgingMinSamples(5);
+        ResilientApartmentsFetcherClient client = client();
+        for (int i = 0; i < 5; i++)
+            client.fetchApartments("fast", 10);
+
+        server.delayNext(Duration.ofMillis(300));
+        assertEquals(TestDataProvider.getInitialApartmentData(), client.fetchApartments("slow", 10));
+
+        assertEquals(0, meterRegistry.counter("apartments.fetch.hedged", "community", "slow").count());
+        assertEquals(6, server.requests().size());
+    }
+
+    private ResilientApartmentsFetcherClient client() {
+        ApartmentsConfig apartmentsConfig = new ApartmentsConfig();
+        apartmentsConfig.setUrl(server.url());
+        HttpClientConfig httpConfig = new HttpClientConfig();
+        httpConfig.setHttp2(false);
+        IrvineCompanyClient delegate = new IrvineCompanyClient(HttpTransport.restTemplate(httpConfig, executor), apartmentsConfig, new ObjectMapper());
+        return new ResilientApartmentsFetcherClient(delegate, config, httpConfig, fetchConfig, meterRegistry);
+    }
+}
@@ -0,0 +1,65 @@
+package com.grishin.apartment.checker.service;
+
+import com.grishin.apartment.checker.dto.AptDTO;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StreamedInventoryTest {
+
+    @Test
+    void testAccept_HandsOnFullBatchesOfDistinctUnits() {
+        List<NormalizedInventory> batches = new ArrayList<>();
+        StreamedInventory stream = new StreamedInventory(2, batch -> {
+            batches.add(batch);
+            return List.of();
+        });
+
+        stream.accept("a", unit("1"));
+        stream.accept("a", unit("2"));
+        stream.accept("a", unit("1"));
+        stream.accept("a", unit("3"));
+        NormalizedInventory rest = stream.finish();
+
+        assertEquals(1, batches.size());
+        assertEquals(Set.of("1", "2"), batches.get(0).getUnitIds());
+        assertEquals(Set.of("3"), rest.getUnitIds());
+        assertEquals(Set.of("1", "2", "3"), stream.getUnitIds());
+        assertEquals(1, stream.getDuplicates());
+    }
+
+    @Test
+    void testFinish_ReturnsUnitsThatGainedGroupsAfterTheirBatch() {
+        StreamedInventory stream = new StreamedInventory(2, batch -> List.of());
+
+        stream.accept("a", unit("1"));
+        stream.accept("a", unit("2"));
+        stream.accept("featured", unit("2"));
+        NormalizedInventory rest = stream.finish();
+
+        assertEquals(Set.of("2"), rest.getUnitIds());
+        assertEquals(Set.of("a", "featured"), rest.getGroupTypes("2"));
+    }
+
+    @Test
+    void testFinish_ReturnsUnitsTheBatchLeftUnsettled() {
+        StreamedInventory stream = new StreamedInventory(1, batch -> batch.getUnitIds().contains("1") ? List.of("1") : List.of());
+
+        stream.accept("a", unit("1"));
+        stream.accept("a", unit("2"));
+        NormalizedInventory rest = stream.finish();
+
+        assertEquals(Set.of("1"), rest.getUnitIds());
+        assertEquals(Set.of("a"), rest.getGroupTypes("1"));
+    }
+
+    private static AptDTO unit(String objectId) {
+        AptDTO apt = new AptDTO();
+        apt.setObjectID(objectId);
+        return apt;
+    }
+}
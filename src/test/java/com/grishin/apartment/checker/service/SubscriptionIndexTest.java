@@ -0,0 +1,277 @@
+package com.grishin.apartment.checker.service;
+
+import com.grishin.apartment.checker.dto.AmenityMask;
+import com.grishin.apartment.checker.dto.ApartmentFilter;
+import com.grishin.apartment.checker.dto.MatchableUnit;
+import com.grishin.apartment.checker.service.SubscriptionIndex.SharedFilter;
+import com.grishin.apartment.checker.service.SubscriptionIndex.Subscription;
+import com.grishin.apartment.checker.storage.UnitAmenityRepository;
+import com.grishin.apartment.checker.storage.UserFilterPreferenceRepository;
+import com.grishin.apartment.checker.storage.entity.UnitAmenity;
+import com.grishin.apartment.checker.storage.entity.UserFilterPreference;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+
+import static java.util.stream.Collectors.toSet;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class SubscriptionIndexTest {
+    private static final List<String> COMMUNITIES = List.of("irvine-1", "irvine-2", "irvine-3");
+    private static final List<String> AMENITIES = List.of("Pool", "Balcony", "Garage", "Fireplace", "Gym", "Storage");
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void testCandidates_NeverMissAMatch() {
+        Random random = new Random(18);
+        List<UserFilterPreference> preferences = IntStream.range(0, 2_000)
+                .mapToObj(i -> randomPreference((long) i, random))
+                .toList();
+        SubscriptionIndex index = index(preferences);
+        // Compiled from the stored filter, not the canonical one, so normalization is checked as well
+        Map<Long, Predicate<MatchableUnit>> predicates = notifiable(preferences);
+
+        for (int i = 0; i < 2_000; i++) {
+            MatchableUnit unit = randomUnit(i, random);
+            Set<Long> expected = predicates.entrySet().stream()
+                    .filter(entry -> entry.getValue().test(unit))
+                    .map(Map.Entry::getKey)
+                    .collect(toSet());
+            List<SharedFilter> candidates = index.candidates(unit);
+            Set<Long> actual = candidates.stream()
+                    .filter(candidate -> candidate.predicate().test(unit))
+                    .flatMap(candidate -> candidate.subscribers().stream())
+                    .map(Subscription::id)
+                    .collect(toSet());
+            assertEquals(expected, actual, "Unit " + unit);
+            assertTrue(candidates.stream().allMatch(candidate -> candidate.filter().communityId().equals(unit.communityId())));
+        }
+    }
+
+    @Test
+    void testPutAndRemove_UpdateIndexInPlace() {
+        SubscriptionIndex index = index(List.of());
+        MatchableUnit unit = unit("irvine-1", false, 2, 2, 3_000, 4, LocalDate.of(2026, 11, 1), Set.of("Pool"));
+
+        UserFilterPreference preference = UserFilterPreference.builder().id(1L).userId(11L).selectedCommunity("irvine-1")
+                .minBedrooms(2).maxPrice(3_500).amenities(new HashSet<>()).build();
+        index.put(preference);
+        assertEquals(List.of(1L), subscriberIds(index.candidates(unit)));
+
+        preference.setMaxPrice(2_500);
+        index.put(preference);
+        assertTrue(index.candidates(unit).isEmpty());
+        assertEquals(1, index.size());
+
+        preference.setMaxPrice(null);
+        preference.setSelectedCommunity("irvine-2");
+        index.put(preference);
+        assertTrue(index.candidates(unit).isEmpty());
+        assertTrue(index.hasSubscriptions("irvine-2"));
+        assertFalse(index.hasSubscriptions("irvine-1"));
+
+        index.removeAll(List.of(1L));
+        assertEquals(0, index.size());
+        assertFalse(index.hasSubscriptions("irvine-2"));
+    }
+
+    @Test
+    void testIdenticalFilters_ShareOneEntry() {
+        Set<UnitAmenity> poolAndGym = new HashSet<>(List.of(amenity(0), amenity(4)));
+        SubscriptionIndex index = index(List.of(
+                UserFilterPreference.builder().id(1L).userId(11L).selectedCommunity("irvine-1").maxPrice(3_500)
+                        .floorplanName("Plan 2").amenities(poolAndGym).build(),
+                UserFilterPreference.builder().id(2L).userId(12L).selectedCommunity("irvine-1").maxPrice(3_500)
+                        .floorplanName("PLAN 2").amenities(new HashSet<>(poolAndGym)).build(),
+                UserFilterPreference.builder().id(3L).userId(13L).selectedCommunity("irvine-1").maxPrice(3_000)
+                        .floorplanName("plan 2").amenities(new HashSet<>(poolAndGym)).build()));
+        MatchableUnit unit = unit("irvine-1", false, 2, 2, 2_900, 4, LocalDate.of(2026, 11, 1), Set.of("Pool", "Gym"));
+
+        assertEquals(3, index.size());
+        assertEquals(2, index.distinctFilters());
+        assertEquals(2.0, meterRegistry.get("apartments.subscriptions.distinct").gauge().value());
+        List<SharedFilter> candidates = index.candidates(unit);
+        assertEquals(2, candidates.size());
+        assertEquals(List.of(1L, 2L, 3L), subscriberIds(candidates));
+
+        index.removeAll(List.of(1L));
+        assertEquals(2, index.distinctFilters());
+        assertEquals(List.of(2L, 3L), subscriberIds(index.candidates(unit)));
+    }
+
+    @Test
+    void testCandidates_PruneMostPredicateEvaluations() {
+        Random random = new Random(100);
+        List<UserFilterPreference> preferences = popularPreferences(10_000, random);
+        SubscriptionIndex index = index(preferences);
+        Map<Long, Predicate<MatchableUnit>> predicates = notifiable(preferences);
+        List<MatchableUnit> units = IntStream.range(0, 200).mapToObj(i -> randomUnit(i, random)).toList();
+
+        long scanned = 0;
+        long indexed = 0;
+        long evaluations = 0;
+        for (MatchableUnit unit : units) {
+            scanned += predicates.values().stream().filter(predicate -> predicate.test(unit)).count();
+            List<SharedFilter> candidates = index.candidates(unit);
+            evaluations += candidates.size();
+            indexed += candidates.stream()
+                    .filter(candidate -> candidate.predicate().test(unit))
+                    .mapToLong(candidate -> candidate.subscribers().size())
+                    .sum();
+        }
+
+        assertEquals(scanned, indexed);
+        // Predicates are only evaluated for a small fraction of the subscriptions
+        assertTrue(evaluations < (long) units.size() * predicates.size() / 10, evaluations + " evaluations");
+    }
+
+    @Test
+    @Tag("slow")
+    void testBenchmark_100kSubscriptions() {
+        Random random = new Random(100);
+        List<UserFilterPreference> preferences = popularPreferences(100_000, random);
+        SubscriptionIndex index = index(preferences);
+        Map<Long, Predicate<MatchableUnit>> predicates = notifiable(preferences);
+        List<MatchableUnit> units = IntStream.range(0, 200).mapToObj(i -> randomUnit(i, random)).toList();
+
+        long scanStart = System.nanoTime();
+        long scanned = 0;
+        for (MatchableUnit unit : units)
+            scanned += predicates.values().stream().filter(predicate -> predicate.test(unit)).count();
+        long scanNanos = System.nanoTime() - scanStart;
+
+        long indexStart = System.nanoTime();
+        long indexed = 0;
+        long evaluations = 0;
+        for (MatchableUnit unit : units) {
+            List<SharedFilter> candidates = index.candidates(unit);
+            evaluations += candidates.size();
+            indexed += candidates.stream()
+                    .filter(candidate -> candidate.predicate().test(unit))
+                    .mapToLong(candidate -> candidate.subscribers().size())
+                    .sum();
+        }
+        long indexNanos = System.nanoTime() - indexStart;
+
+        String report = String.format("%d units x %d subscriptions (%d distinct): scan %d ms, index %d ms, %.1f evaluations per unit",
+                units.size(), predicates.size(), index.distinctFilters(), scanNanos / 1_000_000, indexNanos / 1_000_000,
+                (double) evaluations / units.size());
+        assertEquals(scanned, indexed, report);
+        assertTrue(index.distinctFilters() < predicates.size() / 2, report);
+        assertTrue(evaluations < (long) units.size() * predicates.size() / 10, report);
+    }
+
+    private SubscriptionIndex index(List<UserFilterPreference> preferences) {
+        UnitAmenityRepository amenityRepository = mock(UnitAmenityRepository.class);
+        when(amenityRepository.findAll()).thenReturn(IntStream.range(0, AMENITIES.size())
+                .mapToObj(SubscriptionIndexTest::amenity)
+                .toList());
+        AmenityDictionary dictionary = new AmenityDictionary(amenityRepository);
+        dictionary.load();
+        UserFilterPreferenceRepository preferenceRepository = mock(UserFilterPreferenceRepository.class);
+        when(preferenceRepository.findAllWithAmenities()).thenReturn(preferences);
+        SubscriptionIndex index = new SubscriptionIndex(preferenceRepository, dictionary, meterRegistry);
+        index.load();
+        return index;
+    }
+
+    /**
+     * Most subscriptions copy one of a few thousand popular filters, the rest are one-offs.
+     */
+    private static List<UserFilterPreference> popularPreferences(int count, Random random) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> random.nextInt(10) < 7
+                        ? randomPreference((long) i, new Random(random.nextInt(2_000)))
+                        : randomPreference((long) i, random))
+                .toList();
+    }
+
+    /**
+     * Subscriptions without a community are never notified, so they are left out of the index.
+     */
+    private static Map<Long, Predicate<MatchableUnit>> notifiable(List<UserFilterPreference> preferences) {
+        Map<Long, Predicate<MatchableUnit>> predicates = new LinkedHashMap<>();
+        for (UserFilterPreference preference : preferences) {
+            if (preference.getSelectedCommunity() != null)
+                predicates.put(preference.getId(), ApartmentPredicates.filterBy(ApartmentFilter.createFrom(preference), encode(preference.getAmenities())));
+        }
+        return predicates;
+    }
+
+    private static List<Long> subscriberIds(List<SharedFilter> candidates) {
+        return candidates.stream()
+                .flatMap(candidate -> candidate.subscribers().stream())
+                .map(Subscription::id)
+                .sorted()
+                .toList();
+    }
+
+    private static UserFilterPreference randomPreference(Long id, Random random) {
+        Integer minPrice = random.nextInt(2) == 0 ? 1_500 + 250 * random.nextInt(16) : null;
+        LocalDate from = LocalDate.of(2026, 1, 1).plusDays(7L * random.nextInt(200));
+        Set<UnitAmenity> amenities = new HashSet<>();
+        if (random.nextInt(3) == 0) {
+            amenities.add(amenity(random.nextInt(AMENITIES.size())));
+        }
+        return UserFilterPreference.builder()
+                .id(id)
+                .userId(id % 1_000)
+                .selectedCommunity(random.nextInt(20) == 0 ? null : COMMUNITIES.get(random.nextInt(COMMUNITIES.size())))
+                .isStudio(random.nextInt(4) == 0 ? random.nextBoolean() : null)
+                .minBedrooms(random.nextInt(2) == 0 ? random.nextInt(4) : null)
+                .maxBedrooms(random.nextInt(3) == 0 ? random.nextInt(12) : null)
+                .minBathrooms(random.nextInt(3) == 0 ? 1 + random.nextInt(3) : null)
+                .maxBathrooms(random.nextInt(3) == 0 ? 1 + random.nextInt(3) : null)
+                .minPrice(minPrice)
+                .maxPrice(random.nextInt(2) == 0 ? (minPrice != null ? minPrice : 1_500) + 250 * random.nextInt(8) : null)
+                .minFloor(random.nextInt(3) == 0 ? random.nextInt(10) : null)
+                .maxFloor(random.nextInt(3) == 0 ? random.nextInt(90) : null)
+                .availableFrom(random.nextInt(3) == 0 ? Date.valueOf(from) : null)
+                .availableUntil(random.nextInt(3) == 0 ? Date.valueOf(from.plusDays(random.nextInt(120))) : null)
+                .floorplanName(random.nextInt(10) == 0 ? (random.nextBoolean() ? "Plan " : "PLAN ") + random.nextInt(5) : null)
+                .amenities(amenities)
+                .build();
+    }
+
+    private static MatchableUnit randomUnit(int i, Random random) {
+        Set<String> amenities = new HashSet<>();
+        AMENITIES.forEach(name -> {
+            if (random.nextInt(3) == 0)
+                amenities.add(name);
+        });
+        if (random.nextInt(10) == 0)
+            amenities.add("Not indexed " + i);
+        return unit(random.nextInt(10) == 0 ? "other-community" : COMMUNITIES.get(random.nextInt(COMMUNITIES.size())),
+                random.nextInt(20) == 0 ? null : random.nextInt(5) == 0,
+                random.nextInt(20) == 0 ? null : random.nextInt(12),
+                random.nextInt(20) == 0 ? null : 1 + random.nextInt(3),
+                random.nextInt(20) == 0 ? null : 1_000 + random.nextInt(15_000),
+                random.nextInt(20) == 0 ? null : random.nextInt(90) - 2,
+                random.nextInt(20) == 0 ? null : LocalDate.of(2023, 6, 1).plusDays(random.nextInt(6_000)),
+                amenities);
+    }
+
+    private static MatchableUnit unit(String communityId, Boolean studio, Integer bedrooms, Integer bathrooms, Integer price,
+                                      Integer floor, LocalDate availableDate, Set<String> amenities) {
+        long amenityMask = AmenityMask.bitsOf(amenities.stream().filter(AMENITIES::contains).map(name -> amenity(AMENITIES.indexOf(name))).toList());
+        return new MatchableUnit("unit-" + UUID.randomUUID(), communityId, studio, bedrooms, bathrooms, price, floor,
+                "Plan " + (bedrooms != null ? bedrooms : 0), amenities, amenityMask, availableDate, null);
+    }
+
+    private static UnitAmenity amenity(int maskBit) {
+        return new UnitAmenity((long) maskBit + 1, AMENITIES.get(maskBit), maskBit, new HashSet<>());
+    }
+
+    private static AmenityMask encode(Set<UnitAmenity> amenities) {
+        return amenities.isEmpty() ? AmenityMask.NONE : new AmenityMask(AmenityMask.bitsOf(amenities), Set.of());
+    }
+}
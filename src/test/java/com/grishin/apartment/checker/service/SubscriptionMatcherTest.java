@@ -0,0 +1,197 @@
+package com.grishin.apartment.checker.service;
+
+import com.grishin.apartment.checker.TestDataProvider;
+import com.grishin.apartment.checker.config.ApartmentsConfig;
+import com.grishin.apartment.checker.config.ListingConfig;
+import com.grishin.apartment.checker.config.SyncConfig;
+import com.grishin.apartment.checker.dto.AmenityMask;
+import com.grishin.apartment.checker.dto.ApartmentFilter;
+import com.grishin.apartment.checker.dto.FloorPlanGroupDTO;
+import com.grishin.apartment.checker.dto.MatchableUnit;
+import com.grishin.apartment.checker.storage.ApartmentSpecifications;
+import com.grishin.apartment.checker.storage.GroupMembershipRepository;
+import com.grishin.apartment.checker.storage.ListedUnitRepository;
+import com.grishin.apartment.checker.storage.UnitRepository;
+import com.grishin.apartment.checker.storage.entity.Unit;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.*;
+
+import static com.grishin.apartment.checker.service.SyncFixtures.syntheticCommunity;
+import static java.util.stream.Collectors.toSet;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(showSql = false, properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@ActiveProfiles("test")
+@Import({DataSyncService.class, UserFilterService.class, AmenityDictionary.class, SubscriptionIndex.class,
+        InventorySnapshotService.class, ListingCache.class, ListingConfig.class, ReferenceDataCache.class,
+        GroupMembershipRepository.class, ListedUnitRepository.class, SyncConfig.class, SimpleMeterRegistry.class})
+public class SubscriptionMatcherTest {
+
+    @MockitoBean
+    ApartmentsFetcherClient client;
+    @MockitoBean
+    ApartmentsConfig config;
+    @MockitoBean
+    private TaskScheduler taskScheduler;
+
+    @Autowired
+    private DataSyncService apartmentService;
+
+    @Autowired
+    private InventorySnapshotService inventorySnapshots;
+
+    @Autowired
+    private AmenityDictionary amenityDictionary;
+
+    @Autowired
+    private UnitRepository unitRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Test
+    public void testPredicatesAgreeWithSpecifications() throws IOException {
+        List<FloorPlanGroupDTO> setup = TestDataProvider.getInitialApartmentData();
+        String communityId = setup.get(0).getUnits().get(0).getCommunityIDAEM();
+        apartmentService.processApartmentData(setup, communityId);
+        entityManager.flush();
+        entityManager.clear();
+        // The test transaction never commits, so the dictionary has to pick up the stored amenities itself
+        amenityDictionary.load();
+        List<String> ids = new ArrayList<>(NormalizedInventory.of(setup).getUnitIds());
+        List<MatchableUnit> units = inventorySnapshots.loadUnits(ids);
+        List<String> floorPlanNames = units.stream().map(MatchableUnit::floorPlanName).distinct().toList();
+        List<String> amenityNames = units.stream().flatMap(unit -> unit.amenityNames().stream()).distinct().sorted().toList();
+        List<LocalDate> dates = units.stream().map(MatchableUnit::availableDate).distinct().sorted().toList();
+        InventorySnapshot snapshot = InventorySnapshot.of(units.subList(0, units.size() / 2))
+                .patch(List.of(), units.subList(units.size() / 2, units.size()));
+        Random random = new Random(17);
+
+        for (int i = 0; i < 500; i++) {
+            ApartmentFilter filter = new ApartmentFilter();
+            if (random.nextInt(4) == 0)
+                filter.setCommunityId(random.nextBoolean() ? communityId : "other-community");
+            if (random.nextInt(4) == 0)
+                filter.setIsStudio(random.nextBoolean());
+            if (random.nextInt(3) == 0)
+                filter.setMinBedrooms(random.nextInt(4));
+            if (random.nextInt(3) == 0)
+                filter.setMaxBedrooms(random.nextInt(4));
+            if (random.nextInt(3) == 0)
+                filter.setMinBathrooms(1 + random.nextInt(3));
+            if (random.nextInt(3) == 0)
+                filter.setMaxBathrooms(1 + random.nextInt(3));
+            if (random.nextInt(2) == 0)
+                filter.setMinPrice(2000 + random.nextInt(3000));
+            if (random.nextInt(2) == 0)
+                filter.setMaxPrice(2000 + random.nextInt(4000));
+            if (random.nextInt(3) == 0)
+                filter.setMinFloor(1 + random.nextInt(4));
+            if (random.nextInt(3) == 0)
+                filter.setMaxFloor(1 + random.nextInt(4));
+            if (random.nextInt(4) == 0) {
+                String name = floorPlanNames.get(random.nextInt(floorPlanNames.size()));
+                int start = random.nextInt(name.length());
+                String fragment = name.substring(start, Math.min(name.length(), start + 1 + random.nextInt(4)));
+                filter.setFloorPlanNameContains(random.nextBoolean() ? fragment.toUpperCase() : fragment);
+            }
+            if (random.nextInt(3) == 0 && !amenityNames.isEmpty())
+                filter.setAmenities(random.ints(1 + random.nextInt(2), 0, amenityNames.size()).mapToObj(amenityNames::get).toList());
+            if (random.nextInt(3) == 0)
+                filter.setMinDate(java.sql.Date.valueOf(dates.get(random.nextInt(dates.size())).plusDays(random.nextInt(3) - 1)));
+            if (random.nextInt(3) == 0)
+                filter.setMaxDate(java.sql.Date.valueOf(dates.get(random.nextInt(dates.size())).plusDays(random.nextInt(3) - 1)));
+
+            AmenityMask amenities = amenityDictionary.encode(filter.getAmenities());
+            Set<String> expected = unitRepository.findAll(ApartmentSpecifications.filterBy(filter, amenities, ids)).stream()
+                    .map(Unit::getObjectId)
+                    .collect(toSet());
+            Set<String> actual = units.stream()
+                    .filter(ApartmentPredicates.filterBy(filter, amenities))
+                    .map(MatchableUnit::objectId)
+                    .collect(toSet());
+            assertEquals(expected, actual, "Filter " + filter);
+            Set<String> fromSnapshot = snapshot.filter(filter, amenities).stream()
+                    .map(MatchableUnit::objectId)
+                    .collect(toSet());
+            assertEquals(expected, fromSnapshot, "Snapshot, filter " + filter);
+        }
+    }
+
+    @Test
+    @Tag("slow")
+    public void testAmenityMask_QueryPlanBenchmarkOnH2() {
+        String communityId = "synthetic-community";
+        apartmentService.processApartmentData(syntheticCommunity(communityId, 20_000), communityId);
+        entityManager.flush();
+        entityManager.clear();
+        amenityDictionary.load();
+        List<String> required = List.of("Synthetic amenity 1", "Synthetic amenity 6");
+        AmenityMask mask = amenityDictionary.encode(required);
+        assertTrue(mask.unencoded().isEmpty());
+
+        String names = "'Synthetic amenity 1', 'Synthetic amenity 6'";
+        // The join plus correlated count the specification used before amenity masks
+        String countSubquery = """
+                select distinct u.object_id from units u
+                join unit_amenity_mappings m on m.object_id = u.object_id
+                join unit_amenities a on a.id = m.amenity_id
+                where a.amenity_name in (%s)
+                and (select count(a2.id) from unit_amenity_mappings m2 join unit_amenities a2 on a2.id = m2.amenity_id
+                     where m2.object_id = u.object_id and a2.amenity_name in (%s)) = 2""".formatted(names, names);
+        String bitmask = "select u.object_id from units u where bitand(u.amenity_mask, %d) = %d".formatted(mask.bits(), mask.bits());
+
+        String countSubqueryPlan = explain(countSubquery);
+        String bitmaskPlan = explain(bitmask);
+        long countSubqueryNanos = timed(countSubquery);
+        long bitmaskNanos = timed(bitmask);
+        String report = "count subquery %d ms, bitmask %d ms%nplan before:%n%s%nplan after:%n%s".formatted(
+                countSubqueryNanos / 1_000_000, bitmaskNanos / 1_000_000, countSubqueryPlan, bitmaskPlan);
+
+        Set<String> expected = objectIds(countSubquery);
+        assertEquals(20_000 / 15 + 1, expected.size(), report);
+        assertEquals(expected, objectIds(bitmask), report);
+        ApartmentFilter filter = new ApartmentFilter();
+        filter.setAmenities(required);
+        assertEquals(expected, unitRepository.findAll(ApartmentSpecifications.filterBy(filter, mask)).stream()
+                .map(Unit::getObjectId)
+                .collect(toSet()), report);
+        assertTrue(countSubqueryPlan.toLowerCase().contains("unit_amenity_mappings"), report);
+        assertFalse(bitmaskPlan.toLowerCase().contains("unit_amenity_mappings"), report);
+    }
+
+
+    private String explain(String sql) {
+        return String.valueOf(entityManager.getEntityManager().createNativeQuery("explain " + sql).getSingleResult());
+    }
+
+    private long timed(String sql) {
+        // First run warms up the query cache and page cache, the best of the rest is reported
+        long best = Long.MAX_VALUE;
+        for (int run = 0; run < 6; run++) {
+            long start = System.nanoTime();
+            objectIds(sql);
+            if (run > 0)
+                best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Set<String> objectIds(String sql) {
+        List<Object> rows = entityManager.getEntityManager().createNativeQuery(sql).getResultList();
+        return rows.stream().map(String::valueOf).collect(toSet());
+    }
+}
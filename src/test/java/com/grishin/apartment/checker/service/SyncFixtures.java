@@ -0,0 +1,62 @@
+package com.grishin.apartment.checker.service;
+
+import com.grishin.apartment.checker.dto.AptDTO;
+import com.grishin.apartment.checker.dto.FloorPlanGroupDTO;
+import com.grishin.apartment.checker.dto.LeaseTermDTO;
+import org.hibernate.stat.Statistics;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Synthetic communities and Hibernate statement counts shared by the tests that sync into the database.
+ */
+final class SyncFixtures {
+
+    private SyncFixtures() {
+    }
+
+    /**
+     * One group of units spread over 20 floor plans. Unit {@code i} has amenities {@code i % 5} and
+     * {@code 5 + i % 3}, so exactly the units with {@code i % 15 == 1} have both amenity 1 and amenity 6.
+     */
+    static List<FloorPlanGroupDTO> syntheticCommunity(String communityId, int units) {
+        FloorPlanGroupDTO group = new FloorPlanGroupDTO();
+        group.setGroupType("synthetic");
+        group.setUnits(new ArrayList<>(units));
+        for (int i = 0; i < units; i++) {
+            AptDTO apt = new AptDTO();
+            apt.setObjectID("synthetic-" + i);
+            apt.setUnitID(String.valueOf(i));
+            apt.setCommunityIDAEM(communityId);
+            apt.setFloorplanUniqueID("synthetic-plan-" + i % 20);
+            apt.setUnitFloor(i % 4 + 1);
+            apt.setUnitSqFt(600 + i % 900);
+            apt.setUnitAmenities(List.of("Synthetic amenity " + i % 5, "Synthetic amenity " + (5 + i % 3)));
+            LeaseTermDTO lease = new LeaseTermDTO();
+            lease.setDate("20261101");
+            lease.setDateTimeStamp(1793491200L);
+            lease.setPrice(2000 + i % 1500);
+            lease.setTerm(12);
+            apt.setUnitEarliestAvailable(lease);
+            group.getUnits().add(apt);
+        }
+        return List.of(group);
+    }
+
+    static long statementsDuring(Statistics statistics, TestEntityManager entityManager, Runnable cycle) {
+        statistics.clear();
+        cycle.run();
+        entityManager.flush();
+        return statistics.getPrepareStatementCount();
+    }
+
+    static long readsDuring(Statistics statistics, TestEntityManager entityManager, Runnable cycle) {
+        statistics.clear();
+        cycle.run();
+        entityManager.flush();
+        entityManager.clear();
+        return statistics.getQueryExecutionCount() + statistics.getEntityFetchCount() + statistics.getCollectionFetchCount();
+    }
+}
@@ -10,7 +10,8 @@ export TELEGRAM_BOT_TOKEN=
 
 ./gradlew clean bootJar --no-daemon
 
-java -Duser.timezone=PST8  -jar ./build/libs/apartment.checker-1.0.0.jar & # -Xmx512m -XX:+UseSerialGC -XX:MaxMetaspaceSize=128m for small memory vms
+# HTTP client pool limits are JVM-wide, so they are set here rather than in application.yaml
+java -Duser.timezone=PST8 -Djdk.httpclient.connectionPoolSize=8 -Djdk.httpclient.keepalive.timeout=300 -jar ./build/libs/apartment.checker-1.0.0.jar & # -Xmx512m -XX:+UseSerialGC -XX:MaxMetaspaceSize=128m for small memory vms
 APP_PID=$!
 
 echo $APP_PID > java_pid